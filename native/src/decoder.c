@@ -6,14 +6,60 @@
 
 #include "exceptions.h"
 
+/**
+ * The same as mp3dec_decode_frame, but with float output in the range of -1.0 to 1.0.
+ * This is a second copy of minimp3 that is compiled with MINIMP3_FLOAT_OUTPUT (see CMakeLists.txt).
+ */
+int mp3dec_decode_frame_float(mp3dec_t *dec, const uint8_t *mp3, int mp3_bytes, float *pcm, mp3dec_frame_info_t *info);
+
 typedef struct Decoder {
     mp3dec_t *mp3dec;
     mp3d_sample_t *audio_output;
+    float *float_output;
     jint channels;
     jint sample_rate;
     jint bit_rate;
+    jlong frame_count;
+    bool downmix;
 } Decoder;
 
+/**
+ * Gets the number of channels of the decoded samples.
+ *
+ * @param decoder the decoder
+ * @return the number of output channels or -1 if the header has not been parsed yet
+ */
+jint get_output_channels(const Decoder *decoder) {
+    if (decoder->downmix && decoder->channels > 0) {
+        return 1;
+    }
+    return decoder->channels;
+}
+
+/**
+ * Mixes interleaved stereo samples down to mono in place.
+ *
+ * @param pcm the samples
+ * @param frames the number of samples per channel
+ */
+void downmix_samples(mp3d_sample_t *pcm, const int frames) {
+    for (int i = 0; i < frames; i++) {
+        pcm[i] = (mp3d_sample_t) (((int32_t) pcm[i * 2] + pcm[i * 2 + 1]) >> 1);
+    }
+}
+
+/**
+ * Mixes interleaved stereo float samples down to mono in place.
+ *
+ * @param pcm the samples
+ * @param frames the number of samples per channel
+ */
+void downmix_float_samples(float *pcm, const int frames) {
+    for (int i = 0; i < frames; i++) {
+        pcm[i] = (pcm[i * 2] + pcm[i * 2 + 1]) * 0.5f;
+    }
+}
+
 /**
  * Gets the decoder from the decoder java object.
  *
@@ -40,9 +86,12 @@ JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_createDecoder0(
     Decoder *decoder = malloc(sizeof(Decoder));
     decoder->mp3dec = mp3dec;
     decoder->audio_output = calloc(MINIMP3_MAX_SAMPLES_PER_FRAME, sizeof(mp3d_sample_t));
+    decoder->float_output = calloc(MINIMP3_MAX_SAMPLES_PER_FRAME, sizeof(float));
     decoder->channels = -1;
     decoder->sample_rate = -1;
     decoder->bit_rate = -1;
+    decoder->frame_count = 0;
+    decoder->downmix = false;
 
     return (jlong) (uintptr_t) decoder;
 }
@@ -54,13 +103,85 @@ JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_getMaxSamplesPerFrame
     return MINIMP3_MAX_SAMPLES_PER_FRAME;
 }
 
+/**
+ * Gets the memory region of the given direct input buffer.
+ *
+ * @param env the JNI environment
+ * @param input the direct byte buffer
+ * @param input_offset the offset in the buffer
+ * @param input_length the number of bytes to use
+ * @return the start of the region or NULL - If the region is invalid, this will throw an exception in Java
+ */
+const uint8_t *get_input_region(JNIEnv *env, const jobject input, const jint input_offset, const jint input_length) {
+    const uint8_t *address = (*env)->GetDirectBufferAddress(env, input);
+    if (address == NULL) {
+        throw_illegal_argument_exception(env, "Input buffer is not direct");
+        return NULL;
+    }
+    const jlong capacity = (*env)->GetDirectBufferCapacity(env, input);
+    if (input_offset < 0 || input_length < 0 || (jlong) input_offset + input_length > capacity) {
+        throw_illegal_argument_exception(env, "Input length is too small");
+        return NULL;
+    }
+    return address + input_offset;
+}
+
+/**
+ * Decodes a single frame.
+ *
+ * @param decoder the decoder
+ * @param mp3_input the mp3 data
+ * @param input_length the length of the mp3 data
+ * @param pcm the output to write the samples to - Needs space for MINIMP3_MAX_SAMPLES_PER_FRAME samples
+ * @param float_output if the output is float instead of 16 bit samples
+ * @return the number of samples decoded in the upper 32 bits and the number of bytes consumed in the lower 32 bits
+ */
+jlong decode_frame(Decoder *decoder, const uint8_t *mp3_input, const jint input_length, void *pcm,
+                   const bool float_output) {
+    mp3dec_frame_info_t frame_info = {0};
+    int frames_used;
+    if (float_output) {
+        frames_used = mp3dec_decode_frame_float(decoder->mp3dec, mp3_input, input_length, pcm, &frame_info);
+    } else {
+        frames_used = mp3dec_decode_frame(decoder->mp3dec, mp3_input, input_length, pcm, &frame_info);
+    }
+
+    // If the frame info channels > 0, we can be sure the header has been parsed
+    if (frame_info.channels > 0) {
+        decoder->channels = frame_info.channels;
+        decoder->sample_rate = frame_info.hz;
+        decoder->bit_rate = frame_info.bitrate_kbps;
+    }
+
+    if (frames_used <= 0) {
+        return (jlong) frame_info.frame_bytes & 0xFFFFFFFFLL;
+    }
+
+    decoder->frame_count++;
+
+    if (decoder->downmix && frame_info.channels == 2) {
+        if (float_output) {
+            downmix_float_samples(pcm, frames_used);
+        } else {
+            downmix_samples(pcm, frames_used);
+        }
+    }
+
+    const int32_t frames = frames_used * get_output_channels(decoder);
+    const int32_t bytes = frame_info.frame_bytes;
+
+    return (jlong) (jint) frames << 32 | ((jlong) bytes & 0xFFFFFFFFLL);
+}
+
 JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_decodeNextFrame0(
     JNIEnv *env,
     jobject obj,
     const jlong decoder_pointer,
-    const jbyteArray input,
+    const jobject input,
+    const jint input_offset,
     const jint input_length,
-    const jshortArray output
+    const jshortArray output,
+    const jint output_offset
 ) {
     Decoder *decoder = get_decoder(env, decoder_pointer);
     if (decoder == NULL) {
@@ -69,42 +190,244 @@ JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_decodeNextFrame0(
 
     const jsize java_output_length = (*env)->GetArrayLength(env, output);
 
-    if (java_output_length < MINIMP3_MAX_SAMPLES_PER_FRAME) {
+    if (output_offset < 0 || output_offset > java_output_length ||
+        java_output_length - output_offset < MINIMP3_MAX_SAMPLES_PER_FRAME) {
         throw_illegal_argument_exception(env, "Output array is too small");
         return 0;
     }
 
-    const jsize actual_input_length = (*env)->GetArrayLength(env, input);
+    const uint8_t *mp3_input = get_input_region(env, input, input_offset, input_length);
+    if (mp3_input == NULL) {
+        return 0;
+    }
 
-    if (input_length < 0 || input_length > actual_input_length) {
-        throw_illegal_argument_exception(env, "Input length is too small");
+    // minimp3 doesn't call back into the JVM, so the frame can be decoded directly into the pinned array
+    jshort *pcm = (*env)->GetPrimitiveArrayCritical(env, output, NULL);
+    if (pcm == NULL) {
+        // An OutOfMemoryError is already pending in Java
         return 0;
     }
 
-    const uint8_t *mp3_input = (uint8_t *) (*env)->GetByteArrayElements(env, input, false);
+    const jlong result = decode_frame(decoder, mp3_input, input_length, pcm + output_offset, false);
 
-    mp3dec_frame_info_t frame_info = {0};
-    const int frames_used = mp3dec_decode_frame(decoder->mp3dec, mp3_input, input_length, decoder->audio_output,
-                                                &frame_info);
-    (*env)->ReleaseByteArrayElements(env, input, (jbyte *) mp3_input, JNI_ABORT);
+    (*env)->ReleasePrimitiveArrayCritical(env, output, pcm, 0);
 
-    // If the frame info channels > 0, we can be sure the header has been parsed
-    if (frame_info.channels > 0) {
-        decoder->channels = frame_info.channels;
-        decoder->sample_rate = frame_info.hz;
-        decoder->bit_rate = frame_info.bitrate_kbps;
+    return result;
+}
+
+JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_decodeNextFrameDirect0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong decoder_pointer,
+    const jobject input,
+    const jint input_offset,
+    const jint input_length,
+    const jobject output,
+    const jint output_offset
+) {
+    Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return 0;
     }
 
-    if (frames_used <= 0) {
-        return (jlong) frame_info.frame_bytes & 0xFFFFFFFFLL;
+    mp3d_sample_t *pcm = (*env)->GetDirectBufferAddress(env, output);
+    if (pcm == NULL) {
+        throw_illegal_argument_exception(env, "Output buffer is not direct");
+        return 0;
     }
 
-    (*env)->SetShortArrayRegion(env, output, 0, frames_used * decoder->channels, decoder->audio_output);
+    const jlong output_capacity = (*env)->GetDirectBufferCapacity(env, output);
 
-    const int32_t frames = frames_used * decoder->channels;
-    const int32_t bytes = frame_info.frame_bytes;
+    if (output_offset < 0 || output_offset > output_capacity ||
+        output_capacity - output_offset < MINIMP3_MAX_SAMPLES_PER_FRAME) {
+        throw_illegal_argument_exception(env, "Output buffer is too small");
+        return 0;
+    }
+
+    const uint8_t *mp3_input = get_input_region(env, input, input_offset, input_length);
+    if (mp3_input == NULL) {
+        return 0;
+    }
+
+    return decode_frame(decoder, mp3_input, input_length, pcm + output_offset, false);
+}
+
+JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_decodeFrames0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong decoder_pointer,
+    const jobject input,
+    const jint input_offset,
+    const jint input_length,
+    const jint input_reserve,
+    const jshortArray output,
+    const jint output_offset,
+    const jint output_length
+) {
+    Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return 0;
+    }
+
+    const jsize java_output_length = (*env)->GetArrayLength(env, output);
+
+    if (output_offset < 0 || output_length < MINIMP3_MAX_SAMPLES_PER_FRAME ||
+        (jlong) output_offset + output_length > java_output_length) {
+        throw_illegal_argument_exception(env, "Output array is too small");
+        return 0;
+    }
+
+    const uint8_t *mp3_input = get_input_region(env, input, input_offset, input_length);
+    if (mp3_input == NULL) {
+        return 0;
+    }
+
+    jint total_samples = 0;
+    jint total_bytes = 0;
+
+    // Only decode while the remaining input is larger than the reserve, so we never pass a partial frame to minimp3
+    while (output_length - total_samples >= MINIMP3_MAX_SAMPLES_PER_FRAME && input_length - total_bytes > input_reserve) {
+        const jlong result = decode_frame(decoder, mp3_input + total_bytes, input_length - total_bytes,
+                                          decoder->audio_output, false);
+        const jint samples = (jint) (result >> 32);
+        const jint bytes = (jint) result;
+        if (bytes <= 0) {
+            break;
+        }
+        if (samples > 0) {
+            (*env)->SetShortArrayRegion(env, output, output_offset + total_samples, samples, decoder->audio_output);
+        }
+        total_samples += samples;
+        total_bytes += bytes;
+    }
 
-    return (jlong) (jint) frames << 32 | (jlong) bytes & 0xFFFFFFFFLL;
+    return (jlong) total_samples << 32 | ((jlong) total_bytes & 0xFFFFFFFFLL);
+}
+
+JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_decodeNextFrameFloat0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong decoder_pointer,
+    const jobject input,
+    const jint input_offset,
+    const jint input_length,
+    const jfloatArray output,
+    const jint output_offset
+) {
+    Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return 0;
+    }
+
+    const jsize java_output_length = (*env)->GetArrayLength(env, output);
+
+    if (output_offset < 0 || output_offset > java_output_length ||
+        java_output_length - output_offset < MINIMP3_MAX_SAMPLES_PER_FRAME) {
+        throw_illegal_argument_exception(env, "Output array is too small");
+        return 0;
+    }
+
+    const uint8_t *mp3_input = get_input_region(env, input, input_offset, input_length);
+    if (mp3_input == NULL) {
+        return 0;
+    }
+
+    const jlong result = decode_frame(decoder, mp3_input, input_length, decoder->float_output, true);
+
+    const jint samples = (jint) (result >> 32);
+    if (samples > 0) {
+        (*env)->SetFloatArrayRegion(env, output, output_offset, samples, decoder->float_output);
+    }
+
+    return result;
+}
+
+JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_decodeNextFrameFloatDirect0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong decoder_pointer,
+    const jobject input,
+    const jint input_offset,
+    const jint input_length,
+    const jobject output,
+    const jint output_offset
+) {
+    Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return 0;
+    }
+
+    float *pcm = (*env)->GetDirectBufferAddress(env, output);
+    if (pcm == NULL) {
+        throw_illegal_argument_exception(env, "Output buffer is not direct");
+        return 0;
+    }
+
+    const jlong output_capacity = (*env)->GetDirectBufferCapacity(env, output);
+
+    if (output_offset < 0 || output_offset > output_capacity ||
+        output_capacity - output_offset < MINIMP3_MAX_SAMPLES_PER_FRAME) {
+        throw_illegal_argument_exception(env, "Output buffer is too small");
+        return 0;
+    }
+
+    const uint8_t *mp3_input = get_input_region(env, input, input_offset, input_length);
+    if (mp3_input == NULL) {
+        return 0;
+    }
+
+    return decode_frame(decoder, mp3_input, input_length, pcm + output_offset, true);
+}
+
+JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_decodeFramesFloat0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong decoder_pointer,
+    const jobject input,
+    const jint input_offset,
+    const jint input_length,
+    const jint input_reserve,
+    const jfloatArray output,
+    const jint output_offset,
+    const jint output_length
+) {
+    Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return 0;
+    }
+
+    const jsize java_output_length = (*env)->GetArrayLength(env, output);
+
+    if (output_offset < 0 || output_length < MINIMP3_MAX_SAMPLES_PER_FRAME ||
+        (jlong) output_offset + output_length > java_output_length) {
+        throw_illegal_argument_exception(env, "Output array is too small");
+        return 0;
+    }
+
+    const uint8_t *mp3_input = get_input_region(env, input, input_offset, input_length);
+    if (mp3_input == NULL) {
+        return 0;
+    }
+
+    jint total_samples = 0;
+    jint total_bytes = 0;
+
+    while (output_length - total_samples >= MINIMP3_MAX_SAMPLES_PER_FRAME && input_length - total_bytes > input_reserve) {
+        const jlong result = decode_frame(decoder, mp3_input + total_bytes, input_length - total_bytes,
+                                          decoder->float_output, true);
+        const jint samples = (jint) (result >> 32);
+        const jint bytes = (jint) result;
+        if (bytes <= 0) {
+            break;
+        }
+        if (samples > 0) {
+            (*env)->SetFloatArrayRegion(env, output, output_offset + total_samples, samples, decoder->float_output);
+        }
+        total_samples += samples;
+        total_bytes += bytes;
+    }
+
+    return (jlong) total_samples << 32 | ((jlong) total_bytes & 0xFFFFFFFFLL);
 }
 
 JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_getChannelCount0(
@@ -116,7 +439,20 @@ JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_getChannelCount0(
     if (decoder == NULL) {
         return -1;
     }
-    return decoder->channels;
+    return get_output_channels(decoder);
+}
+
+JNIEXPORT void JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_setDownmix0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong decoder_pointer,
+    const jboolean downmix
+) {
+    Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return;
+    }
+    decoder->downmix = downmix;
 }
 
 JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_getBitRate0(
@@ -143,10 +479,52 @@ JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_getSampleRate0(
     return decoder->sample_rate;
 }
 
-JNIEXPORT void JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_destroyDecoder0(
+JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_getFrameCount0(
     JNIEnv *env,
     jobject obj,
     const jlong decoder_pointer
+) {
+    const Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return -1;
+    }
+    return decoder->frame_count;
+}
+
+JNIEXPORT void JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_resetDecoder0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong decoder_pointer
+) {
+    Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return;
+    }
+    mp3dec_init(decoder->mp3dec);
+}
+
+JNIEXPORT void JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_clearDecoder0(
+    JNIEnv *env,
+    jclass clazz,
+    const jlong decoder_pointer
+) {
+    Decoder *decoder = get_decoder(env, decoder_pointer);
+    if (decoder == NULL) {
+        return;
+    }
+    memset(decoder->mp3dec, 0, sizeof(mp3dec_t));
+    mp3dec_init(decoder->mp3dec);
+    decoder->channels = -1;
+    decoder->sample_rate = -1;
+    decoder->bit_rate = -1;
+    decoder->frame_count = 0;
+    decoder->downmix = false;
+}
+
+JNIEXPORT void JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_destroyDecoder0(
+    JNIEnv *env,
+    jclass clazz,
+    const jlong decoder_pointer
 ) {
     if (decoder_pointer == 0) {
         return;
@@ -154,5 +532,6 @@ JNIEXPORT void JNICALL Java_de_maxhenkel_lame4j_Mp3Decoder_destroyDecoder0(
     Decoder *decoder = (Decoder *) (uintptr_t) decoder_pointer;
     free(decoder->mp3dec);
     free(decoder->audio_output);
+    free(decoder->float_output);
     free(decoder);
 }
@@ -15,6 +15,10 @@ typedef struct Encoder {
     jint sample_rate;
     jint bit_rate;
     jint quality;
+    void *input_buffer;
+    size_t input_buffer_size;
+    unsigned char *output_buffer;
+    int32_t output_buffer_size;
 } Encoder;
 
 /**
@@ -41,13 +45,96 @@ bool check_result(JNIEnv *env, const int result, char *message) {
     return false;
 }
 
+#define CHANNEL_MODE_AUTO 0
+#define CHANNEL_MODE_STEREO 1
+#define CHANNEL_MODE_JOINT_STEREO 2
+#define CHANNEL_MODE_MONO 3
+
+/**
+ * Converts the ordinal of the Java ChannelMode to the LAME mode.
+ *
+ * @param channels the number of input channels
+ * @param channel_mode the ordinal of the Java ChannelMode
+ * @return the LAME mode or NOT_SET if the channel mode is invalid
+ */
+MPEG_mode get_mode(const jint channels, const jint channel_mode) {
+    switch (channel_mode) {
+        case CHANNEL_MODE_AUTO:
+            return channels == 1 ? MONO : JOINT_STEREO;
+        case CHANNEL_MODE_STEREO:
+            return STEREO;
+        case CHANNEL_MODE_JOINT_STEREO:
+            return JOINT_STEREO;
+        case CHANNEL_MODE_MONO:
+            return MONO;
+        default:
+            return NOT_SET;
+    }
+}
+
+#define BIT_RATE_MODE_CBR 0
+#define BIT_RATE_MODE_ABR 1
+#define BIT_RATE_MODE_VBR 2
+
+/**
+ * Configures the bit rate mode of the encoder.
+ *
+ * @param env the JNI environment
+ * @param lame the LAME encoder
+ * @param bit_rate_mode the ordinal of the Java BitRateMode
+ * @param bit_rate the bit rate for CBR or the average bit rate for ABR in kbps
+ * @param vbr_quality the quality for VBR
+ * @param min_bit_rate the minimum bit rate for ABR and VBR in kbps or 0
+ * @param max_bit_rate the maximum bit rate for ABR and VBR in kbps or 0
+ * @return if the configuration succeeded - If not, this will throw an illegal argument exception in Java
+ */
+bool configure_bit_rate(JNIEnv *env, lame_global_flags *lame, const jint bit_rate_mode, const jint bit_rate,
+                        const jfloat vbr_quality, const jint min_bit_rate, const jint max_bit_rate) {
+    switch (bit_rate_mode) {
+        case BIT_RATE_MODE_CBR:
+            return !check_result(env, lame_set_VBR(lame, vbr_off), "Invalid bit rate mode") &&
+                   !check_result(env, lame_set_brate(lame, bit_rate), "Invalid bit rate");
+        case BIT_RATE_MODE_ABR:
+            if (check_result(env, lame_set_VBR(lame, vbr_abr), "Invalid bit rate mode") ||
+                check_result(env, lame_set_VBR_mean_bitrate_kbps(lame, bit_rate), "Invalid bit rate")) {
+                return false;
+            }
+            break;
+        case BIT_RATE_MODE_VBR:
+            if (check_result(env, lame_set_VBR(lame, vbr_mtrh), "Invalid bit rate mode") ||
+                check_result(env, lame_set_VBR_quality(lame, vbr_quality), "Invalid VBR quality")) {
+                return false;
+            }
+            break;
+        default:
+            throw_illegal_argument_exception(env, "Invalid bit rate mode");
+            return false;
+    }
+    if (min_bit_rate > 0 && check_result(env, lame_set_VBR_min_bitrate_kbps(lame, min_bit_rate), "Invalid minimum bit rate")) {
+        return false;
+    }
+    if (max_bit_rate > 0 && check_result(env, lame_set_VBR_max_bitrate_kbps(lame, max_bit_rate), "Invalid maximum bit rate")) {
+        return false;
+    }
+    return true;
+}
+
 JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_createEncoder0(
     JNIEnv *env,
     jclass clazz,
     const jint channels,
     const jint sample_rate,
+    const jint bit_rate_mode,
     const jint bit_rate,
-    const jint quality
+    const jfloat vbr_quality,
+    const jint min_bit_rate,
+    const jint max_bit_rate,
+    const jint lowpass_frequency,
+    const jint quality,
+    const jint out_sample_rate,
+    const jint channel_mode,
+    const jboolean disable_reservoir,
+    const jboolean write_vbr_tag
 ) {
     if (channels != 1 && channels != 2) {
         char *message = string_format("Invalid number of channels: %d", channels);
@@ -71,11 +158,25 @@ JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_createEncoder0(
         lame_close(lame);
         return 0;
     }
-    if (check_result(env, lame_set_brate(lame, bit_rate), "Invalid bit rate")) {
+    if (!configure_bit_rate(env, lame, bit_rate_mode, bit_rate, vbr_quality, min_bit_rate, max_bit_rate)) {
         lame_close(lame);
         return 0;
     }
-    if (check_result(env, lame_set_mode(lame, channels == 1 ? MONO : JOINT_STEREO), "Invalid mode")) {
+    if (lowpass_frequency != 0 && check_result(env, lame_set_lowpassfreq(lame, lowpass_frequency), "Invalid lowpass frequency")) {
+        lame_close(lame);
+        return 0;
+    }
+    if (out_sample_rate > 0 && check_result(env, lame_set_out_samplerate(lame, out_sample_rate), "Invalid output sample rate")) {
+        lame_close(lame);
+        return 0;
+    }
+    const MPEG_mode mode = get_mode(channels, channel_mode);
+    if (mode == NOT_SET || (channels == 1 && mode != MONO)) {
+        lame_close(lame);
+        throw_illegal_argument_exception(env, "Invalid channel mode");
+        return 0;
+    }
+    if (check_result(env, lame_set_mode(lame, mode), "Invalid mode")) {
         lame_close(lame);
         return 0;
     }
@@ -84,6 +185,11 @@ JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_createEncoder0(
         return 0;
     }
 
+    if (disable_reservoir) {
+        lame_set_disable_reservoir(lame, 1);
+    }
+    lame_set_bWriteVbrTag(lame, write_vbr_tag ? 1 : 0);
+
     if (lame_init_params(lame) < 0) {
         lame_close(lame);
         throw_io_exception(env, "Failed to initialize LAME parameters");
@@ -96,6 +202,10 @@ JNIEXPORT jlong JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_createEncoder0(
     encoder->sample_rate = sample_rate;
     encoder->bit_rate = bit_rate;
     encoder->quality = quality;
+    encoder->input_buffer = NULL;
+    encoder->input_buffer_size = 0;
+    encoder->output_buffer = NULL;
+    encoder->output_buffer_size = 0;
 
     return (jlong) (uintptr_t) encoder;
 }
@@ -104,85 +214,511 @@ int32_t estimate_mp3_buffer_size(const int32_t num_samples) {
     return (int32_t) ceil(1.25 * (double) num_samples + 7200.0);
 }
 
-JNIEXPORT jbyteArray JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_writeInternal0(
+/**
+ * Encodes the given interleaved samples.
+ *
+ * @param env the JNI environment
+ * @param encoder the encoder
+ * @param input the interleaved samples
+ * @param input_length the number of samples
+ * @param buffer the output buffer
+ * @param buffer_size the size of the output buffer - Should be at least estimate_mp3_buffer_size(input_length)
+ * @return the number of bytes written or -1 - If encoding failed, this will throw an IO exception in Java
+ */
+int encode_samples(JNIEnv *env, const Encoder *encoder, short *input, const jint input_length, unsigned char *buffer,
+                   const int32_t buffer_size) {
+    int result;
+    if (encoder->channels == 1) {
+        result = lame_encode_buffer(encoder->lame, input, NULL, input_length, buffer, buffer_size);
+    } else {
+        result = lame_encode_buffer_interleaved(encoder->lame, input, input_length / encoder->channels, buffer,
+                                                buffer_size);
+    }
+    if (result < 0) {
+        throw_io_exception(env, "Failed to encode samples");
+        return -1;
+    }
+    return result;
+}
+
+/**
+ * Encodes the given interleaved floating point samples.
+ *
+ * @param env the JNI environment
+ * @param encoder the encoder
+ * @param input the interleaved samples in the range of -1.0 to 1.0
+ * @param input_length the number of samples
+ * @param buffer the output buffer
+ * @param buffer_size the size of the output buffer - Should be at least estimate_mp3_buffer_size(input_length)
+ * @return the number of bytes written or -1 - If encoding failed, this will throw an IO exception in Java
+ */
+int encode_float_samples(JNIEnv *env, const Encoder *encoder, float *input, const jint input_length,
+                         unsigned char *buffer, const int32_t buffer_size) {
+    int result;
+    if (encoder->channels == 1) {
+        result = lame_encode_buffer_ieee_float(encoder->lame, input, NULL, input_length, buffer, buffer_size);
+    } else {
+        result = lame_encode_buffer_interleaved_ieee_float(encoder->lame, input, input_length / encoder->channels,
+                                                           buffer, buffer_size);
+    }
+    if (result < 0) {
+        throw_io_exception(env, "Failed to encode samples");
+        return -1;
+    }
+    return result;
+}
+
+/**
+ * Gets the memory region of the given direct buffer.
+ *
+ * @param env the JNI environment
+ * @param buffer the direct buffer
+ * @param offset the offset in elements
+ * @param length the number of elements to use
+ * @param element_size the size of a single element in bytes
+ * @return the start of the region or NULL - If the region is invalid, this will throw an exception in Java
+ */
+void *get_direct_region(JNIEnv *env, const jobject buffer, const jint offset, const jint length,
+                        const size_t element_size) {
+    char *address = (*env)->GetDirectBufferAddress(env, buffer);
+    if (address == NULL) {
+        throw_illegal_argument_exception(env, "Buffer is not direct");
+        return NULL;
+    }
+    const jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (offset < 0 || length < 0 || (jlong) offset + length > capacity) {
+        throw_illegal_argument_exception(env, "Buffer is too small");
+        return NULL;
+    }
+    return address + (size_t) offset * element_size;
+}
+
+/**
+ * Gets the input buffer of the encoder, growing it if it is too small.
+ * The buffer is kept for the lifetime of the encoder, so it is only allocated once for inputs of the same size.
+ *
+ * @param env the JNI environment
+ * @param encoder the encoder
+ * @param size the number of samples
+ * @param sample_size the size of a single sample in bytes
+ * @return the input buffer or NULL - If the buffer could not be allocated, this will throw an IO exception in Java
+ */
+void *get_input_buffer(JNIEnv *env, Encoder *encoder, const jint size, const size_t sample_size) {
+    const size_t bytes = (size_t) size * sample_size;
+    if (encoder->input_buffer_size < bytes) {
+        void *buffer = realloc(encoder->input_buffer, bytes);
+        if (buffer == NULL) {
+            throw_io_exception(env, "Failed to allocate input buffer");
+            return NULL;
+        }
+        encoder->input_buffer = buffer;
+        encoder->input_buffer_size = bytes;
+    }
+    return encoder->input_buffer;
+}
+
+/**
+ * Gets the output buffer of the encoder, growing it if it is too small.
+ * The buffer is kept for the lifetime of the encoder, so it is only allocated once for inputs of the same size.
+ *
+ * @param env the JNI environment
+ * @param encoder the encoder
+ * @param size the number of bytes
+ * @return the output buffer or NULL - If the buffer could not be allocated, this will throw an IO exception in Java
+ */
+unsigned char *get_output_buffer(JNIEnv *env, Encoder *encoder, const int32_t size) {
+    if (encoder->output_buffer_size < size) {
+        unsigned char *buffer = realloc(encoder->output_buffer, (size_t) size);
+        if (buffer == NULL) {
+            throw_io_exception(env, "Failed to allocate output buffer");
+            return NULL;
+        }
+        encoder->output_buffer = buffer;
+        encoder->output_buffer_size = size;
+    }
+    return encoder->output_buffer;
+}
+
+/**
+ * Copies the encoded data from the output buffer of the encoder to the given Java array.
+ *
+ * @param env the JNI environment
+ * @param encoder the encoder
+ * @param length the number of bytes to copy
+ * @param output the Java array
+ * @param output_offset the offset in the Java array
+ * @return the number of bytes copied or -1 - If the array is too small, this will throw an illegal argument exception in Java
+ */
+jint copy_output(JNIEnv *env, const Encoder *encoder, const jint length, const jbyteArray output, const jint output_offset) {
+    if (output_offset < 0 || (jlong) output_offset + length > (*env)->GetArrayLength(env, output)) {
+        throw_illegal_argument_exception(env, "Output array is too small");
+        return -1;
+    }
+    (*env)->SetByteArrayRegion(env, output, output_offset, length, (jbyte *) encoder->output_buffer);
+    return length;
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_encode0(
     JNIEnv *env,
     jobject obj,
     const jlong encoder_pointer,
-    const jshortArray input
+    const jshortArray input,
+    const jint input_offset,
+    const jint input_length,
+    const jbyteArray output,
+    const jint output_offset
 ) {
-    const Encoder *encoder = get_encoder(env, encoder_pointer);
+    Encoder *encoder = get_encoder(env, encoder_pointer);
     if (encoder == NULL) {
-        return NULL;
+        return -1;
     }
-    const jint input_length = (*env)->GetArrayLength(env, input);
 
     if (input_length % (encoder->channels) != 0) {
         throw_illegal_argument_exception(env, "Input length must be a multiple of the number of channels");
-        return NULL;
+        return -1;
     }
 
-    const int32_t buffer_size = estimate_mp3_buffer_size(input_length) * encoder->channels;
-    unsigned char *buffer = calloc(buffer_size, sizeof(char));
+    if (input_offset < 0 || input_length < 0 || (jlong) input_offset + input_length > (*env)->GetArrayLength(env, input)) {
+        throw_illegal_argument_exception(env, "Input array is too small");
+        return -1;
+    }
 
-    jshort *lame_input = (*env)->GetShortArrayElements(env, input, false);
+    short *lame_input = get_input_buffer(env, encoder, input_length, sizeof(short));
+    if (lame_input == NULL) {
+        return -1;
+    }
+    const int32_t buffer_size = estimate_mp3_buffer_size(input_length);
+    unsigned char *buffer = get_output_buffer(env, encoder, buffer_size);
+    if (buffer == NULL) {
+        return -1;
+    }
 
-    int result;
-    if (encoder->channels == 1) {
-        result = lame_encode_buffer(encoder->lame, lame_input, NULL, input_length, buffer, buffer_size);
-    } else {
-        result = lame_encode_buffer_interleaved(encoder->lame, lame_input, input_length / encoder->channels, buffer,
-                                                buffer_size);
+    (*env)->GetShortArrayRegion(env, input, input_offset, input_length, lame_input);
+
+    const int result = encode_samples(env, encoder, lame_input, input_length, buffer, buffer_size);
+    if (result < 0) {
+        return -1;
+    }
+
+    return copy_output(env, encoder, result, output, output_offset);
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_writeDirect0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer,
+    const jobject input,
+    const jint input_offset,
+    const jint input_length,
+    const jbyteArray output,
+    const jint output_offset
+) {
+    Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+
+    if (input_length % (encoder->channels) != 0) {
+        throw_illegal_argument_exception(env, "Input length must be a multiple of the number of channels");
+        return -1;
+    }
+
+    short *lame_input = get_direct_region(env, input, input_offset, input_length, sizeof(short));
+    if (lame_input == NULL) {
+        return -1;
     }
 
-    (*env)->ReleaseShortArrayElements(env, input, lame_input, JNI_ABORT);
+    const int32_t buffer_size = estimate_mp3_buffer_size(input_length);
+    unsigned char *buffer = get_output_buffer(env, encoder, buffer_size);
+    if (buffer == NULL) {
+        return -1;
+    }
 
+    const int result = encode_samples(env, encoder, lame_input, input_length, buffer, buffer_size);
     if (result < 0) {
-        throw_io_exception(env, "Failed to encode samples");
-        free(buffer);
-        return NULL;
+        return -1;
     }
 
-    const jbyteArray java_output = (*env)->NewByteArray(env, result);
-    (*env)->SetByteArrayRegion(env, java_output, 0, result, (jbyte *) buffer);
-    free(buffer);
-    return java_output;
+    return copy_output(env, encoder, result, output, output_offset);
 }
 
-JNIEXPORT jbyteArray JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_flush0(
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_encodeFloat0(
     JNIEnv *env,
     jobject obj,
-    const jlong encoder_pointer
+    const jlong encoder_pointer,
+    const jfloatArray input,
+    const jint input_offset,
+    const jint input_length,
+    const jbyteArray output,
+    const jint output_offset
+) {
+    Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+
+    if (input_length % (encoder->channels) != 0) {
+        throw_illegal_argument_exception(env, "Input length must be a multiple of the number of channels");
+        return -1;
+    }
+
+    if (input_offset < 0 || input_length < 0 || (jlong) input_offset + input_length > (*env)->GetArrayLength(env, input)) {
+        throw_illegal_argument_exception(env, "Input array is too small");
+        return -1;
+    }
+
+    float *lame_input = get_input_buffer(env, encoder, input_length, sizeof(float));
+    if (lame_input == NULL) {
+        return -1;
+    }
+    const int32_t buffer_size = estimate_mp3_buffer_size(input_length);
+    unsigned char *buffer = get_output_buffer(env, encoder, buffer_size);
+    if (buffer == NULL) {
+        return -1;
+    }
+
+    (*env)->GetFloatArrayRegion(env, input, input_offset, input_length, lame_input);
+
+    const int result = encode_float_samples(env, encoder, lame_input, input_length, buffer, buffer_size);
+    if (result < 0) {
+        return -1;
+    }
+
+    return copy_output(env, encoder, result, output, output_offset);
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_writeFloatDirect0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer,
+    const jobject input,
+    const jint input_offset,
+    const jint input_length,
+    const jbyteArray output,
+    const jint output_offset
+) {
+    Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+
+    if (input_length % (encoder->channels) != 0) {
+        throw_illegal_argument_exception(env, "Input length must be a multiple of the number of channels");
+        return -1;
+    }
+
+    float *lame_input = get_direct_region(env, input, input_offset, input_length, sizeof(float));
+    if (lame_input == NULL) {
+        return -1;
+    }
+
+    const int32_t buffer_size = estimate_mp3_buffer_size(input_length);
+    unsigned char *buffer = get_output_buffer(env, encoder, buffer_size);
+    if (buffer == NULL) {
+        return -1;
+    }
+
+    const int result = encode_float_samples(env, encoder, lame_input, input_length, buffer, buffer_size);
+    if (result < 0) {
+        return -1;
+    }
+
+    return copy_output(env, encoder, result, output, output_offset);
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_encodeDirect0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer,
+    const jobject input,
+    const jint input_offset,
+    const jint input_length,
+    const jobject output,
+    const jint output_offset,
+    const jint output_length
 ) {
     const Encoder *encoder = get_encoder(env, encoder_pointer);
     if (encoder == NULL) {
-        return NULL;
+        return -1;
     }
 
-    unsigned char *buffer = calloc(FLUSH_BUFFER_SIZE, sizeof(char));
+    if (input_length % (encoder->channels) != 0) {
+        throw_illegal_argument_exception(env, "Input length must be a multiple of the number of channels");
+        return -1;
+    }
+
+    if (output_length < estimate_mp3_buffer_size(input_length)) {
+        throw_illegal_argument_exception(env, "Output buffer is too small");
+        return -1;
+    }
+
+    short *lame_input = get_direct_region(env, input, input_offset, input_length, sizeof(short));
+    if (lame_input == NULL) {
+        return -1;
+    }
+
+    unsigned char *buffer = get_direct_region(env, output, output_offset, output_length, sizeof(char));
+    if (buffer == NULL) {
+        return -1;
+    }
+
+    return encode_samples(env, encoder, lame_input, input_length, buffer, output_length);
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_flush0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer,
+    const jbyteArray output,
+    const jint output_offset
+) {
+    Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+
+    unsigned char *buffer = get_output_buffer(env, encoder, FLUSH_BUFFER_SIZE);
+    if (buffer == NULL) {
+        return -1;
+    }
 
     const int result = lame_encode_flush(encoder->lame, buffer, FLUSH_BUFFER_SIZE);
 
     if (result < 0) {
         throw_io_exception(env, "Failed to flush encoder");
-        free(buffer);
-        return NULL;
+        return -1;
     }
 
-    const jbyteArray java_output = (*env)->NewByteArray(env, result);
-    (*env)->SetByteArrayRegion(env, java_output, 0, result, (jbyte *) buffer);
-    free(buffer);
-    return java_output;
+    return copy_output(env, encoder, result, output, output_offset);
 }
 
-JNIEXPORT void JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_destroyEncoder0(
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_flushDirect0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer,
+    const jobject output,
+    const jint output_offset,
+    const jint output_length
+) {
+    const Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+
+    if (output_length < FLUSH_BUFFER_SIZE) {
+        throw_illegal_argument_exception(env, "Output buffer is too small");
+        return -1;
+    }
+
+    unsigned char *buffer = get_direct_region(env, output, output_offset, output_length, sizeof(char));
+    if (buffer == NULL) {
+        return -1;
+    }
+
+    const int result = lame_encode_flush(encoder->lame, buffer, output_length);
+
+    if (result < 0) {
+        throw_io_exception(env, "Failed to flush encoder");
+        return -1;
+    }
+
+    return result;
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_getLameTagFrame0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer,
+    const jbyteArray output,
+    const jint output_offset
+) {
+    Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+
+    unsigned char *buffer = get_output_buffer(env, encoder, FLUSH_BUFFER_SIZE);
+    if (buffer == NULL) {
+        return -1;
+    }
+
+    // Returns 0 if the encoder doesn't write a tag and the required size without writing anything if the buffer is too small
+    const size_t result = lame_get_lametag_frame(encoder->lame, buffer, FLUSH_BUFFER_SIZE);
+
+    if (result > FLUSH_BUFFER_SIZE) {
+        throw_io_exception(env, "Failed to get LAME tag");
+        return -1;
+    }
+
+    return copy_output(env, encoder, (jint) result, output, output_offset);
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_getEncoderDelay0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer
+) {
+    const Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+    return lame_get_encoder_delay(encoder->lame);
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_getFrameSize0(
     JNIEnv *env,
     jobject obj,
     const jlong encoder_pointer
+) {
+    const Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+    return lame_get_framesize(encoder->lame);
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_getOutSampleRate0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer
+) {
+    const Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+    return lame_get_out_samplerate(encoder->lame);
+}
+
+JNIEXPORT jint JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_getLowpassFrequency0(
+    JNIEnv *env,
+    jobject obj,
+    const jlong encoder_pointer
+) {
+    const Encoder *encoder = get_encoder(env, encoder_pointer);
+    if (encoder == NULL) {
+        return -1;
+    }
+    return lame_get_lowpassfreq(encoder->lame);
+}
+
+JNIEXPORT jstring JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_getLameVersion0(
+    JNIEnv *env,
+    jclass clazz
+) {
+    return (*env)->NewStringUTF(env, get_lame_very_short_version());
+}
+
+JNIEXPORT void JNICALL Java_de_maxhenkel_lame4j_Mp3Encoder_destroyEncoder0(
+    JNIEnv *env,
+    jclass clazz,
+    const jlong encoder_pointer
 ) {
     if (encoder_pointer == 0) {
         return;
     }
     Encoder *encoder = (Encoder *) (uintptr_t) encoder_pointer;
     lame_close(encoder->lame);
+    free(encoder->input_buffer);
+    free(encoder->output_buffer);
     free(encoder);
 }
@@ -0,0 +1,55 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures re-encoding a one second file the way the batch mode of the {@link CliConverter} does, with and without reusing decoder contexts.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchTranscodeBenchmark {
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    private Path input;
+    private Path output;
+    private Mp3Transcoder transcoder;
+    private Mp3DecoderPool decoderPool;
+
+    @Setup
+    public void setup() throws IOException, UnknownPlatformException {
+        input = Files.createTempFile("lame4j", ".mp3");
+        output = Files.createTempFile("lame4j", ".mp3");
+        Files.write(input, BenchmarkAudio.encode(2, 44100, 192, 1D));
+        transcoder = new Mp3Transcoder(128, 5, false);
+        decoderPool = new Mp3DecoderPool(1, 1L, TimeUnit.MINUTES);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        decoderPool.close();
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void transcode() throws IOException, UnknownPlatformException {
+        if (pooled) {
+            transcoder.transcode(input, output, decoderPool);
+        } else {
+            transcoder.transcode(input, output);
+        }
+    }
+
+}
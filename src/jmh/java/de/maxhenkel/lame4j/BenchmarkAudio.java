@@ -0,0 +1,85 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Generates the audio data the benchmarks operate on.
+ */
+final class BenchmarkAudio {
+
+    private BenchmarkAudio() {
+
+    }
+
+    /**
+     * Generates a mix of two sine waves.
+     *
+     * @param channels   the number of channels
+     * @param sampleRate the sample rate
+     * @param seconds    the length of the audio
+     * @return the interleaved samples
+     */
+    static short[] generate(int channels, int sampleRate, double seconds) {
+        int frames = (int) Math.round(seconds * sampleRate);
+        short[] samples = new short[frames * channels];
+        double twoPiOverSr = 2D * Math.PI / sampleRate;
+        for (int i = 0; i < frames; i++) {
+            double sample = 0.3D * Math.sin(twoPiOverSr * 440D * i) + 0.3D * Math.sin(twoPiOverSr * 1000D * i);
+            for (int c = 0; c < channels; c++) {
+                samples[i * channels + c] = (short) Math.round(sample * Short.MAX_VALUE);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Encodes generated audio to mp3.
+     *
+     * @param channels   the number of channels
+     * @param sampleRate the sample rate
+     * @param bitRate    the bit rate
+     * @param seconds    the length of the audio
+     * @return the mp3 data
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    static byte[] encode(int channels, int sampleRate, int bitRate, double seconds) throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(channels, sampleRate, bitRate, 5, out)) {
+            encoder.write(generate(channels, sampleRate, seconds));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data the data
+     * @return a direct buffer containing the given data
+     */
+    static ByteBuffer direct(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        return buffer;
+    }
+
+    /**
+     * Discards all data, so that only the cost of producing it is measured.
+     */
+    static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+
+        }
+    }
+
+}
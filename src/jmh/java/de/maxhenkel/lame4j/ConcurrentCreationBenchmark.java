@@ -0,0 +1,46 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how creating encoders and decoders scales with the number of threads.
+ * The throughput on all threads should be a multiple of the throughput on a single thread, as creating contexts doesn't take a global lock.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentCreationBenchmark {
+
+    private ByteBuffer mp3;
+
+    @Setup
+    public void setup() throws IOException, UnknownPlatformException {
+        mp3 = BenchmarkAudio.direct(BenchmarkAudio.encode(2, 44100, 128, 1D));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void singleThread() throws IOException, UnknownPlatformException {
+        createContexts();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void allThreads() throws IOException, UnknownPlatformException {
+        createContexts();
+    }
+
+    private void createContexts() throws IOException, UnknownPlatformException {
+        new Mp3Encoder(2, 44100, 128, 5, new BenchmarkAudio.NullOutputStream()).close();
+        new Mp3Decoder(mp3).close();
+    }
+
+}
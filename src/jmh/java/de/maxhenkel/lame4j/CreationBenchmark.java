@@ -0,0 +1,50 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of creating and closing encoders and decoders, and of reusing decoder contexts from a pool.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CreationBenchmark {
+
+    private ByteBuffer mp3;
+    private Mp3DecoderPool decoderPool;
+
+    @Setup
+    public void setup() throws IOException, UnknownPlatformException {
+        mp3 = BenchmarkAudio.direct(BenchmarkAudio.encode(2, 44100, 128, 1D));
+        decoderPool = new Mp3DecoderPool(4, 1L, TimeUnit.MINUTES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        decoderPool.close();
+    }
+
+    @Benchmark
+    public void createEncoder() throws IOException, UnknownPlatformException {
+        new Mp3Encoder(2, 48000, 128, 5, new BenchmarkAudio.NullOutputStream()).close();
+    }
+
+    @Benchmark
+    public void createDecoder() throws IOException, UnknownPlatformException {
+        new Mp3Decoder(mp3).close();
+    }
+
+    @Benchmark
+    public void acquireDecoder() throws IOException, UnknownPlatformException {
+        decoderPool.acquire(mp3).close();
+    }
+
+}
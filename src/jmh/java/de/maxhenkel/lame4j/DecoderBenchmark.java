@@ -0,0 +1,83 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time per decoded frame and the throughput of decoding whole files.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DecoderBenchmark {
+
+    @Param({"1", "2"})
+    public int channels;
+
+    private byte[] mp3;
+    private Mp3Decoder decoder;
+    private short[] output;
+    private ShortBuffer directOutput;
+
+    @Setup
+    public void setup() throws IOException, UnknownPlatformException {
+        mp3 = BenchmarkAudio.encode(channels, 44100, 128, 10D);
+        decoder = new Mp3Decoder(BenchmarkAudio.direct(mp3));
+        output = new short[decoder.getMaxSamplesPerFrame()];
+        directOutput = ByteBuffer.allocateDirect(decoder.getMaxSamplesPerFrame() * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        decoder.close();
+    }
+
+    /**
+     * Decodes a single frame into a Java array.
+     * The decoder seeks back to the start at the end of the file, which happens once every few hundred frames.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int decodeNextFrame() throws IOException {
+        int samples = decoder.decodeNextFrame(output, 0);
+        if (samples < 0) {
+            decoder.seekToSample(0L);
+        }
+        return samples;
+    }
+
+    /**
+     * Decodes a single frame into a direct buffer.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int decodeNextFrameDirect() throws IOException {
+        directOutput.clear();
+        int samples = decoder.decodeNextFrame(directOutput);
+        if (samples < 0) {
+            decoder.seekToSample(0L);
+        }
+        return samples;
+    }
+
+    /**
+     * Decodes a ten second file from an input stream into a single {@link DecodedAudio}.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public DecodedAudio decode() throws IOException, UnknownPlatformException {
+        return Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+    }
+
+}
@@ -0,0 +1,48 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding with chunk sizes from 20 ms voice packets to one second of bulk audio at 48 kHz.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EncoderBenchmark {
+
+    @Param({"1", "2"})
+    public int channels;
+
+    /**
+     * The number of samples per channel that are passed to the encoder at once.
+     */
+    @Param({"960", "4800", "48000"})
+    public int chunkSize;
+
+    private Mp3Encoder encoder;
+    private short[] chunk;
+
+    @Setup
+    public void setup() throws IOException, UnknownPlatformException {
+        encoder = new Mp3Encoder(channels, 48000, 128, 5, new BenchmarkAudio.NullOutputStream());
+        chunk = BenchmarkAudio.generate(channels, 48000, chunkSize / 48000D);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        encoder.close();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        encoder.write(chunk);
+    }
+
+}
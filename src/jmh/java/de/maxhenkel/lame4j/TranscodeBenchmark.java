@@ -0,0 +1,40 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures re-encoding a ten second stereo file with and without pipelining.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TranscodeBenchmark {
+
+    @Param({"false", "true"})
+    public boolean pipelined;
+
+    private ByteBuffer mp3;
+    private Mp3Transcoder transcoder;
+
+    @Setup
+    public void setup() throws IOException, UnknownPlatformException {
+        mp3 = BenchmarkAudio.direct(BenchmarkAudio.encode(2, 44100, 192, 10D));
+        transcoder = new Mp3Transcoder(64, 5, pipelined);
+    }
+
+    @Benchmark
+    public void transcode() throws IOException, UnknownPlatformException {
+        try (Mp3Decoder decoder = new Mp3Decoder(mp3)) {
+            transcoder.transcode(decoder, new BenchmarkAudio.NullOutputStream());
+        }
+    }
+
+}
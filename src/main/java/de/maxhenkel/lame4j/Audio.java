@@ -10,6 +10,13 @@ public interface Audio {
 
     int getBitRate();
 
+    /**
+     * @return the encoding of the decoded samples
+     */
+    default AudioFormat.Encoding getEncoding() {
+        return AudioFormat.Encoding.PCM_SIGNED;
+    }
+
     /**
      * @return the sample size of the decoded audio in bytes
      */
@@ -30,7 +37,7 @@ public interface Audio {
      * @return the audio format of the decoded audio
      */
     default AudioFormat createAudioFormat() {
-        return new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, getSampleRate(), getSampleSizeInBits(), getChannelCount(), getSampleSizeInBytes() * getChannelCount(), getSampleRate(), false);
+        return new AudioFormat(getEncoding(), getSampleRate(), getSampleSizeInBits(), getChannelCount(), getSampleSizeInBytes() * getChannelCount(), getSampleRate(), false);
     }
 
 }
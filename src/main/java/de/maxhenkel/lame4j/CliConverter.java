@@ -3,31 +3,230 @@ package de.maxhenkel.lame4j;
 import de.maxhenkel.nativeutils.UnknownPlatformException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CliConverter {
 
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar lame4j.jar [options] <input file> <output file>",
+            "       java -jar lame4j.jar [options] <input file or directory>... <output directory>",
+            "Options:",
+            "  -b, --bitrate <kbps>   the bit rate of the output or 0 to use the average bit rate of the input (default: 0)",
+            "  -q, --quality <0-9>    the quality of the encoder, 0 is the highest (default: 5)",
+            "  -t, --threads <count>  the number of files that are transcoded in parallel (default: number of processors)",
+            "  -l, --list <file>      transcodes the files listed in the given file, one path per line"
+    );
+
     public static void main(String[] args) throws IOException, UnknownPlatformException {
-        if (args.length < 2) {
-            System.out.println("Usage: java -jar lame4j.jar <input file> <output file>");
+        int bitRate = Mp3Transcoder.SOURCE_BIT_RATE;
+        int quality = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> lists = new ArrayList<>();
+        List<Path> paths = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-b":
+                    case "--bitrate":
+                        bitRate = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "-q":
+                    case "--quality":
+                        quality = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "-t":
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "-l":
+                    case "--list":
+                        lists.add(Paths.get(value(args, ++i)));
+                        break;
+                    default:
+                        paths.add(Paths.get(args[i]));
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+        if (paths.isEmpty() || paths.size() + lists.size() < 2 || bitRate < 0 || quality < 0 || quality > 9 || threads <= 0) {
+            System.out.println(USAGE);
             return;
         }
-        DecodedAudio decodedAudio = Mp3Decoder.decode(Files.newInputStream(Paths.get(args[0])));
 
-        short[] decode = decodedAudio.getSamples();
+        Path output = paths.remove(paths.size() - 1);
+        if (lists.isEmpty() && paths.size() == 1 && !Files.isDirectory(paths.get(0))) {
+            convert(paths.get(0), output, new Mp3Transcoder(bitRate, quality, true));
+            return;
+        }
 
-        System.out.println("Sample Rate: " + decodedAudio.getSampleRate());
-        System.out.println("Bit Rate: " + decodedAudio.getBitRate());
-        System.out.println("Channels: " + decodedAudio.getChannelCount());
-        System.out.println("Frame Size: " + decodedAudio.getSampleSizeInBits());
+        List<Job> jobs = new ArrayList<>();
+        for (Path path : paths) {
+            addJobs(jobs, path, output);
+        }
+        for (Path list : lists) {
+            for (String line : Files.readAllLines(list, StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    addJobs(jobs, Paths.get(line.trim()), output);
+                }
+            }
+        }
+        if (!checkOutputs(jobs)) {
+            System.exit(1);
+        }
+        // Every worker transcodes a whole file, so there is no need to pipeline the decoding of a single file
+        if (!convertAll(jobs, new Mp3Transcoder(bitRate, quality, false), threads)) {
+            System.exit(1);
+        }
+    }
 
-        System.out.println("Length: " + decode.length + " samples");
-        System.out.println("Duration: " + ((float) decode.length / (float) decodedAudio.getSampleRate()) + " seconds");
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static void convert(Path input, Path output, Mp3Transcoder transcoder) throws IOException, UnknownPlatformException {
+        Mp3Info info = Mp3Info.probe(input);
+
+        System.out.println("Sample Rate: " + info.getSampleRate());
+        System.out.println("Bit Rate: " + info.getBitRate());
+        System.out.println("Channels: " + info.getChannelCount());
+        System.out.println("Frame Size: " + info.getSampleSizeInBits());
+
+        System.out.println("Length: " + info.getSampleCount() * info.getChannelCount() + " samples");
+        System.out.println("Duration: " + info.getDuration() + " seconds");
 
-        Mp3Encoder encoder = new Mp3Encoder(decodedAudio.getChannelCount(), decodedAudio.getSampleRate(), decodedAudio.getBitRate(), 5, Files.newOutputStream(Paths.get(args[1])));
-        encoder.write(decode);
-        encoder.close();
+        transcoder.transcode(input, output);
+    }
+
+    /**
+     * Adds a file or all mp3 files in a directory.
+     * The files of a directory keep their relative path in the output directory.
+     */
+    private static void addJobs(List<Job> jobs, Path input, Path outputDirectory) throws IOException {
+        if (!Files.isDirectory(input)) {
+            jobs.add(new Job(input, outputDirectory.resolve(input.getFileName().toString())));
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(input)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".mp3"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            jobs.add(new Job(file, outputDirectory.resolve(input.relativize(file).toString())));
+        }
+    }
+
+    /**
+     * Checks that no two input files are written to the same output file.
+     * Files with the same name in different directories would otherwise be written by multiple workers at the same time.
+     *
+     * @return <code>false</code> if multiple input files have the same output file
+     */
+    private static boolean checkOutputs(List<Job> jobs) {
+        Map<Path, Path> inputs = new HashMap<>();
+        boolean valid = true;
+        for (Job job : jobs) {
+            Path previous = inputs.putIfAbsent(job.output.toAbsolutePath().normalize(), job.input);
+            if (previous != null) {
+                System.err.println("Both " + previous + " and " + job.input + " would be written to " + job.output);
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Transcodes all files on a fixed number of worker threads.
+     * The workers take the next file from a shared index and reuse the decoder contexts of the previous files through a pool.
+     * LAME contexts can't be reset, so every file gets a new encoder.
+     *
+     * @return <code>false</code> if a file could not be transcoded
+     */
+    private static boolean convertAll(List<Job> jobs, Mp3Transcoder transcoder, int threadCount) {
+        AtomicInteger nextJob = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        DoubleAdder audioSeconds = new DoubleAdder();
+        long start = System.nanoTime();
+        try (Mp3DecoderPool decoderPool = new Mp3DecoderPool(threadCount, 1L, TimeUnit.MINUTES)) {
+            Runnable worker = () -> {
+                int index;
+                while ((index = nextJob.getAndIncrement()) < jobs.size()) {
+                    Job job = jobs.get(index);
+                    try {
+                        Path parent = job.output.toAbsolutePath().getParent();
+                        if (parent != null) {
+                            Files.createDirectories(parent);
+                        }
+                        audioSeconds.add(transcoder.transcode(job.input, job.output, decoderPool));
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        System.err.println("Failed to transcode " + job.input + ": " + e.getMessage());
+                    }
+                }
+            };
+            Thread[] threads = new Thread[Math.min(threadCount, Math.max(jobs.size(), 1))];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(worker, "lame4j-worker-" + i);
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                joinUninterruptibly(thread);
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000D;
+        int succeeded = jobs.size() - failed.get();
+        System.out.println(String.format(Locale.ROOT, "Transcoded %d of %d files in %.2f seconds", succeeded, jobs.size(), seconds));
+        System.out.println(String.format(Locale.ROOT, "Throughput: %.2f files/s, %.2f audio seconds per second", succeeded / seconds, audioSeconds.sum() / seconds));
+        return failed.get() <= 0;
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Job {
+
+        private final Path input;
+        private final Path output;
+
+        private Job(Path input, Path output) {
+            this.input = input;
+            this.output = output;
+        }
     }
 
 }
@@ -1,18 +1,47 @@
 package de.maxhenkel.lame4j;
 
 import javax.sound.sampled.AudioFormat;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
 
+/**
+ * Decoded audio with signed 16 bit samples.
+ * The samples are stored in chunks, so the audio can be longer than the maximum length of a single array.
+ * Use {@link #read(long, short[], int, int)} to access the samples without copying all of them into a single array.
+ */
 public class DecodedAudio implements Audio {
     private final int channelCount;
     private final int sampleRate;
     private final int bitRate;
-    private final short[] samples;
+    private short[][] chunks;
+    /**
+     * The index of the first sample of every chunk.
+     */
+    private long[] chunkOffsets;
+    private final long sampleCount;
 
     public DecodedAudio(int channelCount, int sampleRate, int bitRate, short[] samples) {
+        this(channelCount, sampleRate, bitRate, new short[][]{samples});
+    }
+
+    /**
+     * @param channelCount the number of channels
+     * @param sampleRate   the sample rate
+     * @param bitRate      the bit rate of the mp3 data
+     * @param chunks       the interleaved samples, split into chunks of any size - The chunks are not copied
+     */
+    DecodedAudio(int channelCount, int sampleRate, int bitRate, short[][] chunks) {
         this.channelCount = channelCount;
         this.sampleRate = sampleRate;
         this.bitRate = bitRate;
-        this.samples = samples;
+        this.chunks = chunks;
+        chunkOffsets = new long[chunks.length];
+        long offset = 0L;
+        for (int i = 0; i < chunks.length; i++) {
+            chunkOffsets[i] = offset;
+            offset += chunks[i].length;
+        }
+        sampleCount = offset;
     }
 
     @Override
@@ -30,12 +59,121 @@ public class DecodedAudio implements Audio {
         return bitRate;
     }
 
+    /**
+     * @return the number of samples of all channels
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Gets all samples as a single array.
+     * <br/>
+     * <b>NOTE</b>: If the samples are stored in multiple chunks, the first call copies them into a single array, which then replaces the chunks.
+     * This needs twice the memory of the samples while copying.
+     * Use {@link #read(long, short[], int, int)} and {@link #getSampleCount()} to avoid this.
+     *
+     * @return the interleaved samples
+     * @throws IllegalStateException if there are more samples than fit into a single array
+     */
     public short[] getSamples() {
-        return samples;
+        synchronized (this) {
+            if (chunks.length == 1) {
+                return chunks[0];
+            }
+            if (sampleCount > ShortArrayBuffer.SOFT_MAX_ARRAY_LENGTH) {
+                throw new IllegalStateException("Decoded audio is too large for a single array");
+            }
+            short[] samples = new short[(int) sampleCount];
+            read(0L, samples, 0, samples.length);
+            chunks = new short[][]{samples};
+            chunkOffsets = new long[]{0L};
+            return samples;
+        }
+    }
+
+    /**
+     * Copies samples into the given array.
+     *
+     * @param position the index of the first sample to copy
+     * @param dst      the array to copy the samples to
+     * @param offset   the offset in the array
+     * @param length   the maximum number of samples to copy
+     * @return the number of samples copied or -1 if the position is at or after the end of the audio
+     */
+    public int read(long position, short[] dst, int offset, int length) {
+        if (offset < 0 || length < 0 || length > dst.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (position < 0L) {
+            throw new IllegalArgumentException("Position must not be negative");
+        }
+        if (position >= sampleCount) {
+            return -1;
+        }
+        synchronized (this) {
+            int count = (int) Math.min(length, sampleCount - position);
+            int copied = 0;
+            int chunk = findChunk(position);
+            int chunkPosition = (int) (position - chunkOffsets[chunk]);
+            while (copied < count) {
+                int n = Math.min(count - copied, chunks[chunk].length - chunkPosition);
+                System.arraycopy(chunks[chunk], chunkPosition, dst, offset + copied, n);
+                copied += n;
+                chunk++;
+                chunkPosition = 0;
+            }
+            return copied;
+        }
+    }
+
+    /**
+     * Copies samples into the remaining space of the given buffer and advances its position.
+     *
+     * @param position the index of the first sample to copy
+     * @param dst      the buffer to copy the samples to
+     * @return the number of samples copied or -1 if the position is at or after the end of the audio
+     */
+    public int read(long position, ShortBuffer dst) {
+        if (position < 0L) {
+            throw new IllegalArgumentException("Position must not be negative");
+        }
+        if (position >= sampleCount) {
+            return -1;
+        }
+        synchronized (this) {
+            int count = (int) Math.min(dst.remaining(), sampleCount - position);
+            int copied = 0;
+            int chunk = findChunk(position);
+            int chunkPosition = (int) (position - chunkOffsets[chunk]);
+            while (copied < count) {
+                int n = Math.min(count - copied, chunks[chunk].length - chunkPosition);
+                dst.put(chunks[chunk], chunkPosition, n);
+                copied += n;
+                chunk++;
+                chunkPosition = 0;
+            }
+            return copied;
+        }
+    }
+
+    /**
+     * @return the index of the chunk that contains the given sample
+     */
+    private int findChunk(long position) {
+        int index = Arrays.binarySearch(chunkOffsets, position);
+        if (index < 0) {
+            return -index - 2;
+        }
+        // Skip empty chunks that start at the same position
+        while (chunks[index].length == 0) {
+            index++;
+        }
+        return index;
     }
 
     @Override
     public AudioFormat createAudioFormat() {
-        return new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, getSampleSizeInBits(), channelCount, getSampleSizeInBytes() * channelCount, sampleRate, false);
+        return new AudioFormat(getEncoding(), sampleRate, getSampleSizeInBits(), channelCount, getSampleSizeInBytes() * channelCount, sampleRate, false);
     }
 }
@@ -0,0 +1,82 @@
+package de.maxhenkel.lame4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects floating point samples in a list of fixed size arrays.
+ * See {@link ShortChunkBuffer}.
+ * This class is not thread safe.
+ */
+class FloatChunkBuffer {
+
+    /**
+     * The number of samples per chunk.
+     */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private final List<float[]> chunks;
+    private long expectedSize;
+    private long size;
+    private float[] current;
+    private int currentSize;
+
+    /**
+     * @param expectedSize the expected number of samples or -1 if unknown - If the expected size is correct, the last chunk is allocated with the exact size
+     */
+    public FloatChunkBuffer(long expectedSize) {
+        this.expectedSize = expectedSize;
+        chunks = new ArrayList<>(expectedSize > 0L ? (int) Math.min(1024L, (expectedSize + CHUNK_SIZE - 1L) / CHUNK_SIZE) : 16);
+        current = new float[0];
+    }
+
+    public void write(float[] samples, int offset, int length) {
+        while (length > 0) {
+            if (currentSize >= current.length) {
+                nextChunk();
+            }
+            int count = Math.min(length, current.length - currentSize);
+            System.arraycopy(samples, offset, current, currentSize, count);
+            currentSize += count;
+            size += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void nextChunk() {
+        int chunkSize = CHUNK_SIZE;
+        if (expectedSize > size) {
+            chunkSize = (int) Math.min(CHUNK_SIZE, expectedSize - size);
+        } else {
+            // The estimate was too small, so all following chunks get the full size
+            expectedSize = -1L;
+        }
+        current = new float[chunkSize];
+        currentSize = 0;
+        chunks.add(current);
+    }
+
+    /**
+     * @return the number of samples in the buffer
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the chunks containing all samples.
+     * Only the last chunk is copied if it isn't completely filled.
+     *
+     * @return the chunks
+     */
+    public float[][] toChunks() {
+        if (currentSize < current.length && !chunks.isEmpty()) {
+            current = Arrays.copyOf(current, currentSize);
+            chunks.set(chunks.size() - 1, current);
+        }
+        return chunks.toArray(new float[0][]);
+    }
+
+}
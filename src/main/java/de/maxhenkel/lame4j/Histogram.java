@@ -0,0 +1,70 @@
+package de.maxhenkel.lame4j;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram with power of two buckets.
+ * Bucket 0 counts the value 0 and bucket n counts the values from 2^(n-1) to 2^n - 1.
+ */
+class Histogram {
+
+    static final int BUCKET_COUNT = 64;
+
+    private final LongAdder[] buckets;
+
+    public Histogram() {
+        buckets = new LongAdder[BUCKET_COUNT];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param value the value to record - Negative values are counted as 0
+     */
+    public void record(long value) {
+        buckets[value <= 0L ? 0 : 64 - Long.numberOfLeadingZeros(value)].increment();
+    }
+
+    /**
+     * @return the number of values in every bucket
+     */
+    public long[] getCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @param percentile the percentile from 0 to 100
+     * @return the upper bound of the bucket that contains the given percentile or 0 if no values were recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = getCounts();
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total <= 0L) {
+            return 0L;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100D);
+        long sum = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i];
+            if (sum >= threshold && counts[i] > 0L) {
+                return i == 0 ? 0L : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1L);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package de.maxhenkel.lame4j;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Creates the first frame of an mp3 file containing a Xing/Info tag with the LAME extension.
+ * The layout is the same as the one written by LAME itself.
+ */
+class LameTag {
+
+    private static final int FLAGS = 0x1 | 0x2 | 0x4 | 0x8;
+    private static final int TOC_SIZE = 100;
+    /**
+     * The size of the Xing/Info tag with all fields.
+     */
+    private static final int XING_SIZE = 4 + 4 + 4 + 4 + TOC_SIZE + 4;
+    /**
+     * The size of the LAME extension, including the CRC of the tag.
+     */
+    private static final int LAME_SIZE = 36;
+    private static final int VERSION_SIZE = 9;
+    private static final int MAX_DELAY_PADDING = 0xFFF;
+
+    private static final int VBR_METHOD_CBR = 1;
+    private static final int ATH_TYPE = 4;
+    private static final int FLAG_NS_PSY_TUNE = 0x10;
+    private static final int NOISE_SHAPING = 1;
+    private static final int STEREO_MODE_MONO = 0;
+    private static final int STEREO_MODE_JOINT = 3;
+    /**
+     * LAME doesn't expose the VBR quality used for constant bit rate encoding, this is its default.
+     */
+    private static final int DEFAULT_VBR_QUALITY = 4;
+
+    /**
+     * Creates the tag frame for the given constant bit rate audio frames.
+     *
+     * @param audioHeader      the header of the first audio frame
+     * @param frameOffsets     the offsets of all audio frames, relative to the first audio frame
+     * @param audioBytes       the size of all audio frames in bytes
+     * @param musicCrc         the CRC-16 of all audio frames
+     * @param version          the short LAME version string
+     * @param quality          the quality of the encoder
+     * @param lowpassFrequency the lowpass frequency of the encoder in Hz or -1 if disabled
+     * @param inSampleRate     the sample rate of the encoder input
+     * @param encoderDelay     the number of samples per channel the encoder added to the start
+     * @param encoderPadding   the number of samples per channel the encoder added to the end
+     * @return the tag frame or <code>null</code> if the tag doesn't fit into a frame with the bit rate of the audio
+     */
+    @Nullable
+    public static byte[] create(Mp3FrameHeader audioHeader, long[] frameOffsets, long audioBytes, int musicCrc, String version, int quality, int lowpassFrequency, int inSampleRate, int encoderDelay, long encoderPadding) {
+        // The tag frame has no padding and no CRC
+        Mp3FrameHeader header = Mp3FrameHeader.parse((audioHeader.getHeader() & ~(1 << 9)) | 1 << 16);
+        if (header == null || header.getSideInfoEnd() + XING_SIZE + LAME_SIZE > header.getFrameSize()) {
+            return null;
+        }
+        byte[] frame = new byte[header.getFrameSize()];
+        long streamBytes = frame.length + audioBytes;
+
+        writeInt(frame, 0, header.getHeader());
+
+        int pos = header.getSideInfoEnd();
+        pos = writeString(frame, pos, "Info", 4);
+        pos = writeInt(frame, pos, FLAGS);
+        pos = writeInt(frame, pos, frameOffsets.length);
+        pos = writeInt(frame, pos, (int) streamBytes);
+        for (int i = 0; i < TOC_SIZE; i++) {
+            long offset = frameOffsets[(int) ((long) frameOffsets.length * i / TOC_SIZE)];
+            frame[pos++] = (byte) Math.min(255L, offset * 256L / audioBytes);
+        }
+        pos = writeInt(frame, pos, 100 - 10 * DEFAULT_VBR_QUALITY - quality);
+
+        pos = writeString(frame, pos, version, VERSION_SIZE);
+        frame[pos++] = (byte) VBR_METHOD_CBR;
+        frame[pos++] = (byte) (lowpassFrequency <= 0 ? 0 : Math.min(255, (lowpassFrequency + 50) / 100));
+        // Peak signal amplitude, radio and audiophile replay gain are not calculated
+        pos += 4 + 2 + 2;
+        frame[pos++] = (byte) (FLAG_NS_PSY_TUNE | ATH_TYPE);
+        frame[pos++] = (byte) Math.min(255, audioHeader.getBitRate());
+        int delay = encoderDelay < 0 || encoderDelay > MAX_DELAY_PADDING ? 0 : encoderDelay;
+        int padding = encoderPadding < 0L || encoderPadding > MAX_DELAY_PADDING ? 0 : (int) encoderPadding;
+        frame[pos++] = (byte) (delay >>> 4);
+        frame[pos++] = (byte) ((delay & 0xF) << 4 | padding >>> 8);
+        frame[pos++] = (byte) padding;
+        int stereoMode = audioHeader.getChannelCount() == 1 ? STEREO_MODE_MONO : STEREO_MODE_JOINT;
+        frame[pos++] = (byte) (NOISE_SHAPING | stereoMode << 2 | getSourceSampleRate(inSampleRate) << 6);
+        // MP3 gain, surround info and preset are not used
+        pos += 1 + 2;
+        pos = writeInt(frame, pos, (int) streamBytes);
+        frame[pos++] = (byte) (musicCrc >>> 8);
+        frame[pos++] = (byte) musicCrc;
+        int tagCrc = crc16(0, frame, 0, pos);
+        frame[pos++] = (byte) (tagCrc >>> 8);
+        frame[pos] = (byte) tagCrc;
+        return frame;
+    }
+
+    private static int getSourceSampleRate(int sampleRate) {
+        if (sampleRate <= 32000) {
+            return 0;
+        } else if (sampleRate == 48000) {
+            return 2;
+        } else if (sampleRate > 48000) {
+            return 3;
+        }
+        return 1;
+    }
+
+    private static int writeInt(byte[] data, int pos, int value) {
+        data[pos] = (byte) (value >>> 24);
+        data[pos + 1] = (byte) (value >>> 16);
+        data[pos + 2] = (byte) (value >>> 8);
+        data[pos + 3] = (byte) value;
+        return pos + 4;
+    }
+
+    private static int writeString(byte[] data, int pos, String value, int length) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, data, pos, Math.min(bytes.length, length));
+        return pos + length;
+    }
+
+    /**
+     * Calculates the CRC-16 that is used for the music and the tag CRC of the LAME extension.
+     *
+     * @param crc    the CRC of the previous data or 0
+     * @param data   the data
+     * @param offset the offset in the data
+     * @param length the number of bytes
+     * @return the CRC
+     */
+    public static int crc16(int crc, byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            crc ^= data[i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((crc & 1) != 0) {
+                    crc = (crc >>> 1) ^ 0xA001;
+                } else {
+                    crc >>>= 1;
+                }
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+}
@@ -0,0 +1,154 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.file.Path;
+
+/**
+ * An audio input stream that decodes mp3 data on demand and provides it as signed 16 bit little endian PCM data.
+ * Only a few frames are decoded at a time into a buffer that is reused, so the memory usage doesn't depend on the length of the audio.
+ */
+public class Mp3AudioInputStream extends AudioInputStream {
+
+    private Mp3AudioInputStream(PcmInputStream stream, long length) {
+        super(stream, stream.decoder.createAudioFormat(), length);
+    }
+
+    /**
+     * Creates an audio input stream that decodes the given mp3 data.
+     * The length of the stream is not known.
+     *
+     * @param inputStream the input stream of the mp3 file - The stream is closed when the audio input stream is closed
+     * @return the audio input stream
+     * @throws IOException              if an I/O error occurs or the mp3 data doesn't contain a header
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static Mp3AudioInputStream open(InputStream inputStream) throws IOException, UnknownPlatformException {
+        return open(new Mp3Decoder(inputStream));
+    }
+
+    /**
+     * Creates an audio input stream that decodes the given mp3 file.
+     * The file is memory mapped and the length of the stream is known.
+     *
+     * @param path the path of the mp3 file
+     * @return the audio input stream
+     * @throws IOException              if an I/O error occurs or the mp3 file doesn't contain a header
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static Mp3AudioInputStream open(Path path) throws IOException, UnknownPlatformException {
+        return open(Mp3Decoder.map(path));
+    }
+
+    /**
+     * Creates an audio input stream that decodes with the given decoder.
+     * The first frames are decoded immediately to read the format of the audio.
+     * If the decoder is seekable, the length of the stream is known.
+     *
+     * @param decoder the decoder - The decoder is closed when the audio input stream is closed
+     * @return the audio input stream
+     * @throws IOException if an I/O error occurs or the mp3 data doesn't contain a header
+     */
+    public static Mp3AudioInputStream open(Mp3Decoder decoder) throws IOException {
+        try {
+            PcmInputStream stream = new PcmInputStream(decoder);
+            stream.fill();
+            if (!decoder.headerParsed()) {
+                throw new IOException("No header found");
+            }
+            long length = decoder.isSeekable() ? decoder.getSampleCount() : AudioSystem.NOT_SPECIFIED;
+            return new Mp3AudioInputStream(stream, length);
+        } catch (Throwable t) {
+            decoder.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Decodes the mp3 data into little endian PCM bytes.
+     */
+    private static class PcmInputStream extends InputStream {
+
+        private final Mp3Decoder decoder;
+        private final short[] samples;
+        private final byte[] buffer;
+        private final ShortBuffer shortView;
+        private int position;
+        private int limit;
+        private boolean endOfStream;
+
+        private PcmInputStream(Mp3Decoder decoder) {
+            this.decoder = decoder;
+            samples = new short[decoder.getMaxSamplesPerFrame() * 4];
+            buffer = new byte[samples.length * 2];
+            shortView = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        }
+
+        /**
+         * Decodes the next frames into the buffer if it is empty.
+         *
+         * @return <code>false</code> if the end of the mp3 data is reached
+         */
+        private boolean fill() throws IOException {
+            while (position >= limit) {
+                if (endOfStream) {
+                    return false;
+                }
+                int decoded = decoder.decodeFrames(samples, 0, samples.length);
+                if (decoded < 0) {
+                    endOfStream = true;
+                    return false;
+                }
+                shortView.clear();
+                shortView.put(samples, 0, decoded);
+                position = 0;
+                limit = decoded * 2;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int length = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            decoder.close();
+        }
+
+    }
+
+}
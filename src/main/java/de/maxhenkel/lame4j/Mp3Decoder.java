@@ -1,39 +1,206 @@
 package de.maxhenkel.lame4j;
 
-import de.maxhenkel.nativeutils.NativeInitializer;
 import de.maxhenkel.nativeutils.UnknownPlatformException;
 
 import javax.annotation.Nullable;
 import javax.sound.sampled.AudioFormat;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 public class Mp3Decoder implements Audio, AutoCloseable {
 
+    /**
+     * The number of bytes that are kept buffered for the decoder, unless the end of the stream is reached.
+     * This covers the largest frame minimp3 supports and the header of the following frame.
+     */
+    static final int MIN_BUFFERED_BYTES = 4 * 1024;
+
+    /**
+     * The size of the input buffer for decoders reading from a stream or a channel.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The number of samples per channel the decoder adds to the start of the audio.
+     * This is the same value LAME uses when calculating the padding it writes into the tag.
+     */
+    static final int DECODER_DELAY = 529;
+
+    @Nullable
+    private final Mp3DecoderPool pool;
     private long pointer;
+    private final NativeCleaner.Cleanable cleanable;
+    @Nullable
     private final InputStream inputStream;
-    private final byte[] inBuffer;
-    private final byte[] leftoverBuffer;
-    private int leftoverBufferLength;
+    @Nullable
+    private final SeekableByteChannel channel;
+    private final ByteBuffer inBuffer;
+    private long inBufferOffset;
+    @Nullable
+    private final byte[] readBuffer;
     private final short[] outBuffer;
+    private boolean endOfStream;
+    private long streamReadCount;
+    @Nullable
+    private Mp3SeekIndex seekIndex;
+    private int samplesToSkip;
+    private boolean gapless;
+    private boolean gaplessInfoRead;
+    /**
+     * The number of samples per channel without the encoder delay and padding or -1 if the mp3 data has no LAME tag.
+     */
+    private long gaplessSampleCount = -1L;
+    /**
+     * The number of samples per channel from the start of the first frame to the first sample of the audio.
+     */
+    private long gaplessOffset;
+    /**
+     * The average bit rate from the Xing tag or -1 if the tag has no frame and byte count.
+     */
+    private int tagBitRate = -1;
+    /**
+     * The number of samples per channel that are returned before the padding at the end is reached or -1 if the samples are not limited.
+     */
+    private long samplesRemaining = -1L;
+    @Nullable
+    private Mp3MetricsListener metricsListener;
+    /**
+     * The frame count of the native context when the last decode call was reported to the metrics listener.
+     */
+    private long metricsFrameCount;
 
     public Mp3Decoder(InputStream inputStream) throws IOException, UnknownPlatformException {
-        synchronized (Mp3Decoder.class) {
-            NativeInitializer.load("liblame4j");
-            pointer = createDecoder0();
-            this.inputStream = inputStream;
-            inBuffer = new byte[16 * 1024];
-            leftoverBuffer = new byte[16 * 1024];
-            leftoverBufferLength = 0;
-            outBuffer = new short[getMaxSamplesPerFrame0()];
+        this(null, 0L, inputStream, null, null);
+    }
+
+    /**
+     * Creates a decoder that reads the mp3 data directly from the given buffer instead of an input stream.
+     * The data between the position and the limit of the buffer is decoded without being copied.
+     * The position of the given buffer is not modified.
+     *
+     * @param input a direct buffer containing the mp3 data
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public Mp3Decoder(ByteBuffer input) throws IOException, UnknownPlatformException {
+        this(null, 0L, null, null, input);
+    }
+
+    /**
+     * Creates a decoder that reads the mp3 data from the given channel.
+     * The data is read directly into native memory and the decoder supports seeking with {@link #seekToSample(long)}.
+     * Decoding starts at the current position of the channel.
+     *
+     * @param channel the channel of the mp3 file
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public Mp3Decoder(SeekableByteChannel channel) throws IOException, UnknownPlatformException {
+        this(null, 0L, null, channel, null);
+    }
+
+    /**
+     * Creates a decoder that memory maps the given file.
+     * The mapped memory is passed to the native decoder directly, so the file is read from the page cache without copying it through Java arrays.
+     * The decoder supports seeking with {@link #seekToSample(long)}.
+     * <br/>
+     * <b>NOTE</b>: Files larger than 2 GiB can't be mapped and are read through a {@link FileChannel} instead.
+     *
+     * @param path the path of the mp3 file
+     * @return the decoder
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static Mp3Decoder map(Path path) throws IOException, UnknownPlatformException {
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = fileChannel.size();
+            if (size > Integer.MAX_VALUE) {
+                return new Mp3Decoder(fileChannel);
+            }
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+            fileChannel.close();
+            return new Mp3Decoder(buffer);
+        } catch (Throwable t) {
+            fileChannel.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Creates a decoder that reads from exactly one of the given stream, channel or buffer.
+     *
+     * @param pool        the pool the native context is released to when the decoder is closed or <code>null</code> if it should be destroyed
+     * @param pointer     the native context or 0 if a new context should be created
+     * @param inputStream the stream to read from
+     * @param channel     the channel to read from
+     * @param input       the direct buffer to read from
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    Mp3Decoder(@Nullable Mp3DecoderPool pool, long pointer, @Nullable InputStream inputStream, @Nullable SeekableByteChannel channel, @Nullable ByteBuffer input) throws IOException, UnknownPlatformException {
+        this.pool = pool;
+        this.pointer = pointer == 0L ? createContext() : pointer;
+        // Registered before anything else can fail, so the context is destroyed even if this constructor throws
+        this.cleanable = NativeCleaner.register(this, "Mp3Decoder", this.pointer, Mp3Decoder::destroyContext);
+        this.inputStream = inputStream;
+        this.channel = channel;
+        if (input != null) {
+            inBuffer = checkDirect(input).slice();
+            readBuffer = null;
+            endOfStream = true;
+        } else {
+            inBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            inBuffer.limit(0);
+            readBuffer = inputStream == null ? null : new byte[BUFFER_SIZE];
+        }
+        if (channel != null) {
+            inBufferOffset = channel.position();
         }
+        outBuffer = new short[getMaxSamplesPerFrame0()];
+        metricsListener = Mp3Metrics.getListener();
+    }
+
+    /**
+     * Creates a native decoder context.
+     *
+     * @return the pointer of the native context
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    static long createContext() throws IOException, UnknownPlatformException {
+        NativeLibrary.load();
+        long pointer = createDecoder0();
+        Mp3Metrics.decoderCreated();
+        return pointer;
+    }
+
+    private static ByteBuffer checkDirect(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Input buffer must be direct");
+        }
+        return buffer;
     }
 
     private static native long createDecoder0();
 
     private static native int getMaxSamplesPerFrame0();
 
-    private native long decodeNextFrame0(long decoderPointer, byte[] input, int inputLength, short[] output) throws IOException;
+    private native long decodeNextFrame0(long decoderPointer, ByteBuffer input, int inputOffset, int inputLength, short[] output, int outputOffset) throws IOException;
+
+    private native long decodeNextFrameDirect0(long decoderPointer, ByteBuffer input, int inputOffset, int inputLength, ShortBuffer output, int outputOffset) throws IOException;
 
     /**
      * Decodes the next frame in the mp3 file and returns the decoded audio data as PCM samples.
@@ -44,26 +211,621 @@ public class Mp3Decoder implements Audio, AutoCloseable {
      * @return the decoded audio data as PCM samples or <code>null</code> if the end of the mp3 file is reached
      * @throws IOException if an I/O error occurs
      */
+    @Nullable
     public short[] decodeNextFrame() throws IOException {
         synchronized (this) {
-            System.arraycopy(leftoverBuffer, 0, inBuffer, 0, leftoverBufferLength);
-            int bytesRead = inputStream.read(inBuffer, leftoverBufferLength, inBuffer.length - leftoverBufferLength);
+            int samplesDecoded = decodeNextFrame(outBuffer, 0);
+            if (samplesDecoded < 0) {
+                return null;
+            }
+            return Arrays.copyOf(outBuffer, samplesDecoded);
+        }
+    }
+
+    /**
+     * Decodes the next frame in the mp3 file and writes the decoded PCM samples into the given array.
+     * If the header of the mp3 file is not yet parsed, this method will parse the header.
+     * <br/>
+     * <b>NOTE</b>: The array needs to have space for at least {@link #getMaxSamplesPerFrame()} samples after the offset.
+     *
+     * @param dst    the array to write the decoded samples to
+     * @param offset the offset in the array to start writing at
+     * @return the number of samples written, 0 if the current data did not contain a complete frame or -1 if the end of the mp3 file is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int decodeNextFrame(short[] dst, int offset) throws IOException {
+        if (offset < 0 || offset > dst.length || dst.length - offset < outBuffer.length) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
+        synchronized (this) {
+            if (!prepareInput()) {
+                return -1;
+            }
+            long start = startMetrics();
+            long result = decodeNextFrame0(pointer, inBuffer, inBuffer.position(), inBuffer.remaining(), dst, offset);
+            return skipSamples(dst, offset, advance(result, start));
+        }
+    }
+
+    /**
+     * Decodes the next frame in the mp3 file and writes the decoded PCM samples into the given buffer.
+     * The samples are written directly into the memory of the buffer, starting at its position.
+     * The position of the buffer is advanced by the number of samples written.
+     * <br/>
+     * <b>NOTE</b>: The buffer needs to be direct, in native byte order and have at least {@link #getMaxSamplesPerFrame()} samples remaining.
+     *
+     * @param dst the direct buffer to write the decoded samples to
+     * @return the number of samples written, 0 if the current data did not contain a complete frame or -1 if the end of the mp3 file is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int decodeNextFrame(ShortBuffer dst) throws IOException {
+        if (!dst.isDirect() || dst.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("Output buffer must be direct and in native byte order");
+        }
+        if (dst.remaining() < outBuffer.length) {
+            throw new IllegalArgumentException("Output buffer is too small");
+        }
+        synchronized (this) {
+            if (!prepareInput()) {
+                return -1;
+            }
+            long start = startMetrics();
+            long result = decodeNextFrameDirect0(pointer, inBuffer, inBuffer.position(), inBuffer.remaining(), dst, dst.position());
+            return skipSamples(dst, advance(result, start));
+        }
+    }
+
+    private native long decodeFrames0(long decoderPointer, ByteBuffer input, int inputOffset, int inputLength, int inputReserve, short[] output, int outputOffset, int outputLength) throws IOException;
+
+    /**
+     * Decodes as many frames as are currently buffered and fit into the given array with a single native call.
+     * If the header of the mp3 file is not yet parsed, this method will parse the header.
+     * <br/>
+     * <b>NOTE</b>: The maximum number of samples needs to be at least {@link #getMaxSamplesPerFrame()}.
+     *
+     * @param dst        the array to write the decoded samples to
+     * @param offset     the offset in the array to start writing at
+     * @param maxSamples the maximum number of samples to write
+     * @return the number of samples written, 0 if the current data did not contain a complete frame or -1 if the end of the mp3 file is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int decodeFrames(short[] dst, int offset, int maxSamples) throws IOException {
+        if (offset < 0 || maxSamples < outBuffer.length || offset > dst.length - maxSamples) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
+        synchronized (this) {
+            if (!prepareInput()) {
+                return -1;
+            }
+            long start = startMetrics();
+            long result = decodeFrames0(pointer, inBuffer, inBuffer.position(), inBuffer.remaining(), endOfStream ? 0 : MIN_BUFFERED_BYTES, dst, offset, maxSamples);
+            return skipSamples(dst, offset, advance(result, start));
+        }
+    }
+
+    private native long decodeNextFrameFloat0(long decoderPointer, ByteBuffer input, int inputOffset, int inputLength, float[] output, int outputOffset) throws IOException;
+
+    private native long decodeNextFrameFloatDirect0(long decoderPointer, ByteBuffer input, int inputOffset, int inputLength, FloatBuffer output, int outputOffset) throws IOException;
+
+    private native long decodeFramesFloat0(long decoderPointer, ByteBuffer input, int inputOffset, int inputLength, int inputReserve, float[] output, int outputOffset, int outputLength) throws IOException;
+
+    /**
+     * Decodes the next frame in the mp3 file and writes the decoded samples as floating point values in the range of -1.0 to 1.0 into the given array.
+     * The samples are not rounded to 16 bit, so they keep the full resolution of the decoder.
+     * If the header of the mp3 file is not yet parsed, this method will parse the header.
+     * <br/>
+     * <b>NOTE</b>: The array needs to have space for at least {@link #getMaxSamplesPerFrame()} samples after the offset.
+     *
+     * @param dst    the array to write the decoded samples to
+     * @param offset the offset in the array to start writing at
+     * @return the number of samples written, 0 if the current data did not contain a complete frame or -1 if the end of the mp3 file is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int decodeNextFrame(float[] dst, int offset) throws IOException {
+        if (offset < 0 || offset > dst.length || dst.length - offset < outBuffer.length) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
+        synchronized (this) {
+            if (!prepareInput()) {
+                return -1;
+            }
+            long start = startMetrics();
+            long result = decodeNextFrameFloat0(pointer, inBuffer, inBuffer.position(), inBuffer.remaining(), dst, offset);
+            return skipSamples(dst, offset, advance(result, start));
+        }
+    }
+
+    /**
+     * Decodes the next frame in the mp3 file and writes the decoded samples as floating point values in the range of -1.0 to 1.0 into the given buffer.
+     * The samples are written directly into the memory of the buffer, starting at its position.
+     * The position of the buffer is advanced by the number of samples written.
+     * <br/>
+     * <b>NOTE</b>: The buffer needs to be direct, in native byte order and have at least {@link #getMaxSamplesPerFrame()} samples remaining.
+     *
+     * @param dst the direct buffer to write the decoded samples to
+     * @return the number of samples written, 0 if the current data did not contain a complete frame or -1 if the end of the mp3 file is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int decodeNextFrame(FloatBuffer dst) throws IOException {
+        if (!dst.isDirect() || dst.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("Output buffer must be direct and in native byte order");
+        }
+        if (dst.remaining() < outBuffer.length) {
+            throw new IllegalArgumentException("Output buffer is too small");
+        }
+        synchronized (this) {
+            if (!prepareInput()) {
+                return -1;
+            }
+            long start = startMetrics();
+            long result = decodeNextFrameFloatDirect0(pointer, inBuffer, inBuffer.position(), inBuffer.remaining(), dst, dst.position());
+            return skipSamples(dst, advance(result, start));
+        }
+    }
+
+    /**
+     * Decodes as many frames as are currently buffered and fit into the given array with a single native call.
+     * The samples are written as floating point values in the range of -1.0 to 1.0.
+     * If the header of the mp3 file is not yet parsed, this method will parse the header.
+     * <br/>
+     * <b>NOTE</b>: The maximum number of samples needs to be at least {@link #getMaxSamplesPerFrame()}.
+     *
+     * @param dst        the array to write the decoded samples to
+     * @param offset     the offset in the array to start writing at
+     * @param maxSamples the maximum number of samples to write
+     * @return the number of samples written, 0 if the current data did not contain a complete frame or -1 if the end of the mp3 file is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int decodeFrames(float[] dst, int offset, int maxSamples) throws IOException {
+        if (offset < 0 || maxSamples < outBuffer.length || offset > dst.length - maxSamples) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
+        synchronized (this) {
+            if (!prepareInput()) {
+                return -1;
+            }
+            long start = startMetrics();
+            long result = decodeFramesFloat0(pointer, inBuffer, inBuffer.position(), inBuffer.remaining(), endOfStream ? 0 : MIN_BUFFERED_BYTES, dst, offset, maxSamples);
+            return skipSamples(dst, offset, advance(result, start));
+        }
+    }
+
+    /**
+     * Refills the input buffer from the input stream once it runs low on data.
+     * Only the few unconsumed bytes at the end of the buffer are moved to its start before reading,
+     * the stream is not touched while more than {@link #MIN_BUFFERED_BYTES} are buffered.
+     *
+     * @return <code>false</code> if there is no more data to decode
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean fillInBuffer() throws IOException {
+        if (endOfStream || inBuffer.remaining() > MIN_BUFFERED_BYTES) {
+            return inBuffer.hasRemaining();
+        }
+        inBufferOffset += inBuffer.position();
+        inBuffer.compact();
+        while (inBuffer.position() <= MIN_BUFFERED_BYTES) {
+            int bytesRead = read();
+            streamReadCount++;
             if (bytesRead < 0) {
-                if (leftoverBufferLength <= 0) {
-                    return null;
-                }
-                bytesRead = 0;
+                endOfStream = true;
+                break;
             }
-            int bytesToUse = leftoverBufferLength + bytesRead;
-            long result = decodeNextFrame0(pointer, inBuffer, bytesToUse, outBuffer);
+        }
+        inBuffer.flip();
+        return inBuffer.hasRemaining();
+    }
+
+    /**
+     * Fills the input buffer and reads the LAME tag before the first frame is decoded.
+     *
+     * @return <code>false</code> if there is no more data to decode or the end of the audio is reached
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean prepareInput() throws IOException {
+        if (samplesRemaining == 0L) {
+            return false;
+        }
+        if (!fillInBuffer()) {
+            return false;
+        }
+        if (gapless && !gaplessInfoRead) {
+            readGaplessInfo();
+            // The tag frame might have been the only buffered frame
+            return fillInBuffer();
+        }
+        return true;
+    }
+
+    /**
+     * Reads the Info/LAME tag of the first frame and skips the frame, as it doesn't contain any audio.
+     * Only the buffered data is searched, so the tag of a stream is not found if it is preceded by a very large ID3v2 tag.
+     */
+    private void readGaplessInfo() throws IOException {
+        gaplessInfoRead = true;
+        Mp3FrameScanner scanner = new Mp3FrameScanner(new ByteBufferInputStream(inBuffer.duplicate()));
+        Mp3FrameHeader header = scanner.next();
+        if (header == null) {
+            return;
+        }
+        XingHeader tag = scanner.readXingHeader(header);
+        if (tag != null && tag.getFrameCount() > 0L && tag.getByteCount() > 0L) {
+            tagBitRate = Mp3Info.averageBitRate(tag.getByteCount(), tag.getFrameCount(), header);
+        }
+        if (tag == null || tag.getEncoderDelay() < 0 || tag.getFrameCount() < 0L) {
+            return;
+        }
+        inBuffer.position(inBuffer.position() + (int) scanner.getPosition());
+
+        int samplesPerFrame = header.getSamplesPerFrame();
+        int startTrim = tag.getEncoderDelay() + DECODER_DELAY;
+        // The frame count of the tag doesn't include the tag frame itself
+        gaplessSampleCount = Math.max(0L, tag.getFrameCount() * samplesPerFrame - tag.getEncoderDelay() - tag.getEncoderPadding());
+        gaplessOffset = samplesPerFrame + startTrim;
+        samplesToSkip = startTrim;
+        samplesRemaining = gaplessSampleCount;
+    }
+
+    /**
+     * Enables removing the encoder delay and padding that LAME adds to the audio.
+     * The delay and padding are read from the Info/LAME tag in the first frame, which is skipped instead of being decoded as a silent frame.
+     * This makes the decoded audio exactly as long as the audio that was encoded, so consecutive tracks can be played without gaps or clicks.
+     * Mp3 data without a LAME tag is decoded unchanged.
+     * <br/>
+     * <b>NOTE</b>: This should be set before decoding the first frame, as the tag is only read from the start of the mp3 data.
+     *
+     * @param gapless if the encoder delay and padding should be removed
+     */
+    public void setGapless(boolean gapless) {
+        synchronized (this) {
+            this.gapless = gapless;
+        }
+    }
+
+    /**
+     * Gets the exact length of the decoded audio, which can be used to allocate the storage for the samples upfront.
+     * This reads the start of the mp3 data if no frame was decoded yet.
+     *
+     * @return the number of samples per channel without the encoder delay and padding or -1 if gapless decoding is disabled or the mp3 data has no LAME tag
+     * @throws IOException if an I/O error occurs
+     */
+    public long getGaplessSampleCount() throws IOException {
+        synchronized (this) {
+            readGaplessInfoIfNeeded();
+            return gaplessSampleCount;
+        }
+    }
+
+    private void readGaplessInfoIfNeeded() throws IOException {
+        if (gapless && !gaplessInfoRead && fillInBuffer()) {
+            readGaplessInfo();
+        }
+    }
+
+    private int read() throws IOException {
+        Mp3MetricsListener listener = metricsListener;
+        if (listener == null) {
+            return readInput();
+        }
+        long start = System.nanoTime();
+        int bytesRead = readInput();
+        listener.inputRead(bytesRead, System.nanoTime() - start);
+        return bytesRead;
+    }
+
+    private int readInput() throws IOException {
+        if (channel != null) {
+            return channel.read(inBuffer);
+        }
+        if (inputStream == null || readBuffer == null) {
+            return -1;
+        }
+        int bytesRead = inputStream.read(readBuffer, 0, inBuffer.remaining());
+        if (bytesRead > 0) {
+            inBuffer.put(readBuffer, 0, bytesRead);
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Advances the input buffer by the number of bytes the decoder consumed and reports the decode call to the metrics listener.
+     *
+     * @param result the result of the native decode call
+     * @param start  the time the native decode call started
+     * @return the number of samples decoded
+     */
+    private int advance(long result, long start) {
+        int samplesDecoded = (int) (result >> 32);
+        int bytesToAdvance = (int) result;
+        inBuffer.position(inBuffer.position() + bytesToAdvance);
+        recordDecode(samplesDecoded, bytesToAdvance, start);
+        return samplesDecoded;
+    }
+
+    private void recordDecode(int samplesDecoded, int bytesConsumed, long start) {
+        Mp3MetricsListener listener = metricsListener;
+        if (listener == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        long frameCount = getFrameCount0(pointer);
+        if (samplesDecoded > 0) {
+            listener.decoded((int) (frameCount - metricsFrameCount), samplesDecoded, bytesConsumed, nanos);
+        } else if (bytesConsumed > 0) {
+            listener.skipped(bytesConsumed);
+        }
+        metricsFrameCount = frameCount;
+    }
+
+    /**
+     * Decodes frames from the given buffer instead of the input of this decoder.
+     * This is used by {@link Mp3PushDecoder}, which manages the input itself.
+     *
+     * @param input        the direct buffer containing the mp3 data - The position is advanced by the number of bytes consumed
+     * @param inputReserve the number of bytes to leave in the buffer, so that no partial frame is passed to the decoder
+     * @param dst          the array to write the decoded samples to
+     * @param offset       the offset in the array to start writing at
+     * @param maxSamples   the maximum number of samples to write
+     * @return the number of samples written
+     * @throws IOException if an I/O error occurs
+     */
+    int decodeFrames(ByteBuffer input, int inputReserve, short[] dst, int offset, int maxSamples) throws IOException {
+        synchronized (this) {
+            long start = startMetrics();
+            long result = decodeFrames0(pointer, input, input.position(), input.remaining(), inputReserve, dst, offset, maxSamples);
             int samplesDecoded = (int) (result >> 32);
-            int bytesToAdvance = (int) result;
-            short[] samples = new short[samplesDecoded];
-            System.arraycopy(outBuffer, 0, samples, 0, samplesDecoded);
-            leftoverBufferLength = bytesToUse - bytesToAdvance;
-            System.arraycopy(inBuffer, bytesToAdvance, leftoverBuffer, 0, leftoverBufferLength);
+            int bytesConsumed = (int) result;
+            input.position(input.position() + bytesConsumed);
+            recordDecode(samplesDecoded, bytesConsumed, start);
+            return samplesDecoded;
+        }
+    }
+
+    /**
+     * @return the start time of a measurement or 0 if metrics are disabled
+     */
+    private long startMetrics() {
+        return metricsListener == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Sets the listener this decoder reports to, replacing the global listener the decoder was created with.
+     *
+     * @param listener the listener or <code>null</code> to disable metrics for this decoder
+     */
+    public void setMetricsListener(@Nullable Mp3MetricsListener listener) {
+        synchronized (this) {
+            metricsListener = listener;
+            metricsFrameCount = getFrameCount0(pointer);
+        }
+    }
+
+    /**
+     * Removes the samples before the seek position or the encoder delay from the decoded samples.
+     * If gapless decoding is enabled, the padding at the end of the audio is removed as well.
+     *
+     * @param dst     the array the samples were written to
+     * @param offset  the offset the samples were written at
+     * @param samples the number of samples written
+     * @return the number of remaining samples
+     */
+    private int skipSamples(short[] dst, int offset, int samples) {
+        int skip = getSamplesToSkip(samples);
+        int keep = limitSamples(samples - skip);
+        if (skip > 0) {
+            System.arraycopy(dst, offset + skip, dst, offset, keep);
+        }
+        return keep;
+    }
+
+    /**
+     * Removes the samples before the seek position or the encoder delay and the padding from the decoded samples and advances the position of the buffer.
+     *
+     * @param dst     the buffer the samples were written to, starting at its position
+     * @param samples the number of samples written
+     * @return the number of remaining samples
+     */
+    private int skipSamples(ShortBuffer dst, int samples) {
+        int skip = getSamplesToSkip(samples);
+        int keep = limitSamples(samples - skip);
+        if (skip > 0) {
+            ShortBuffer remaining = dst.duplicate();
+            remaining.position(dst.position() + skip).limit(dst.position() + skip + keep);
+            dst.put(remaining);
+        } else {
+            dst.position(dst.position() + keep);
+        }
+        return keep;
+    }
+
+    private int skipSamples(float[] dst, int offset, int samples) {
+        int skip = getSamplesToSkip(samples);
+        int keep = limitSamples(samples - skip);
+        if (skip > 0) {
+            System.arraycopy(dst, offset + skip, dst, offset, keep);
+        }
+        return keep;
+    }
+
+    private int skipSamples(FloatBuffer dst, int samples) {
+        int skip = getSamplesToSkip(samples);
+        int keep = limitSamples(samples - skip);
+        if (skip > 0) {
+            FloatBuffer remaining = dst.duplicate();
+            remaining.position(dst.position() + skip).limit(dst.position() + skip + keep);
+            dst.put(remaining);
+        } else {
+            dst.position(dst.position() + keep);
+        }
+        return keep;
+    }
+
+    private int getSamplesToSkip(int samples) {
+        if (samplesToSkip <= 0 || samples <= 0) {
+            return 0;
+        }
+        int channels = getChannelCount0(pointer);
+        int skip = Math.min(samplesToSkip, samples / channels);
+        samplesToSkip -= skip;
+        return skip * channels;
+    }
+
+    /**
+     * Removes the padding at the end of the audio from the decoded samples.
+     *
+     * @param samples the number of samples after removing the skipped samples
+     * @return the number of samples before the end of the audio
+     */
+    private int limitSamples(int samples) {
+        if (samplesRemaining < 0L || samples <= 0) {
             return samples;
         }
+        int channels = getChannelCount0(pointer);
+        int keep = (int) Math.min(samples, samplesRemaining * channels);
+        samplesRemaining -= keep / channels;
+        return keep;
+    }
+
+    private native void resetDecoder0(long decoderPointer);
+
+    /**
+     * Moves the decoder to the given sample, so that the next decoded frame starts with it.
+     * The frame positions are scanned from the frame headers the first time this is called.
+     * Only a few frames before the sample are decoded to restore the state of the decoder,
+     * so the samples are the same as when decoding the whole file.
+     * For VBR files this can be more frames, since decoding starts early enough to restore the bit reservoir of the frames before the sample.
+     * <br/>
+     * If gapless decoding is enabled, the sample is relative to the first sample after the encoder delay.
+     * <br/>
+     * <b>NOTE</b>: This is only supported for decoders that are not created with an {@link InputStream}.
+     *
+     * @param sample the sample per channel to seek to
+     * @throws IOException if an I/O error occurs or the mp3 file is invalid
+     */
+    public void seekToSample(long sample) throws IOException {
+        if (sample < 0L) {
+            throw new IllegalArgumentException("Sample must not be negative");
+        }
+        synchronized (this) {
+            readGaplessInfoIfNeeded();
+            Mp3SeekIndex index = getSeekIndex();
+            // The index contains the tag frame, so the sample is moved by the tag frame and the delay
+            long indexSample = gaplessSampleCount >= 0L ? sample + gaplessOffset : sample;
+            int frame = index.getFrameForSample(indexSample);
+            int primingFrame = index.getPrimingFrame(frame);
+
+            resetDecoder0(pointer);
+            samplesToSkip = 0;
+            setInputPosition(index.getFrameOffset(primingFrame));
+
+            skipTo(index.getFrameOffset(frame));
+            if (frame < index.getFrameCount()) {
+                samplesToSkip = (int) (indexSample - (long) frame * index.getSamplesPerFrame());
+            }
+            if (gaplessSampleCount >= 0L) {
+                samplesRemaining = Math.max(0L, gaplessSampleCount - sample);
+            }
+        }
+    }
+
+    /**
+     * Decodes and discards all frames before the given position in the input.
+     * This restores the state of the decoder for the frame at the given position.
+     *
+     * @param position the position of the first frame that should not be discarded
+     * @throws IOException if an I/O error occurs
+     */
+    void skipTo(long position) throws IOException {
+        synchronized (this) {
+            while (inBufferOffset + inBuffer.position() < position && fillInBuffer()) {
+                long start = startMetrics();
+                long result = decodeNextFrame0(pointer, inBuffer, inBuffer.position(), inBuffer.remaining(), outBuffer, 0);
+                if ((int) result <= 0 && endOfStream) {
+                    break;
+                }
+                advance(result, start);
+            }
+        }
+    }
+
+    /**
+     * @return the number of samples per channel of all frames, which is where {@link #seekToSample(long)} can seek to - If gapless decoding is enabled, the encoder delay and padding are not included
+     * @throws IOException if an I/O error occurs or the mp3 file is invalid
+     */
+    public long getSampleCount() throws IOException {
+        synchronized (this) {
+            readGaplessInfoIfNeeded();
+            if (gaplessSampleCount >= 0L) {
+                return gaplessSampleCount;
+            }
+            return getSeekIndex().getSampleCount();
+        }
+    }
+
+    /**
+     * @return if the decoder supports {@link #seekToSample(long)}
+     */
+    public boolean isSeekable() {
+        return inputStream == null;
+    }
+
+    private Mp3SeekIndex getSeekIndex() throws IOException {
+        if (seekIndex != null) {
+            return seekIndex;
+        }
+        if (channel != null) {
+            long position = channel.position();
+            channel.position(0L);
+            seekIndex = Mp3SeekIndex.build(Channels.newInputStream(channel));
+            channel.position(position);
+        } else if (inputStream == null) {
+            ByteBuffer data = inBuffer.duplicate();
+            data.clear();
+            seekIndex = Mp3SeekIndex.build(new ByteBufferInputStream(data));
+        } else {
+            throw new UnsupportedOperationException("Decoder is not seekable");
+        }
+        return seekIndex;
+    }
+
+    private void setInputPosition(long position) throws IOException {
+        if (channel != null) {
+            channel.position(position);
+            inBufferOffset = position;
+            inBuffer.position(0).limit(0);
+            endOfStream = false;
+        } else if (inputStream == null) {
+            inBuffer.position((int) position);
+        } else {
+            throw new UnsupportedOperationException("Decoder is not seekable");
+        }
+    }
+
+    private native long getFrameCount0(long decoderPointer);
+
+    /**
+     * @return the number of frames that were decoded so far
+     */
+    public long getFrameCount() {
+        synchronized (this) {
+            return getFrameCount0(pointer);
+        }
+    }
+
+    /**
+     * @return the number of times data was read from the input stream so far
+     */
+    public long getStreamReadCount() {
+        synchronized (this) {
+            return streamReadCount;
+        }
+    }
+
+    /**
+     * @return the maximum number of samples a single frame can decode to
+     */
+    public int getMaxSamplesPerFrame() {
+        return outBuffer.length;
     }
 
     /**
@@ -86,6 +848,23 @@ public class Mp3Decoder implements Audio, AutoCloseable {
         }
     }
 
+    private native void setDownmix0(long decoderPointer, boolean downmix);
+
+    /**
+     * Enables mixing stereo audio down to mono while decoding.
+     * The channels are averaged with integer arithmetic in the same native call that decodes the frame,
+     * so {@link #getChannelCount()} reports a single channel and every decoded frame has half the samples.
+     * <br/>
+     * <b>NOTE</b>: This should be set before decoding the first frame, as already decoded samples are not converted.
+     *
+     * @param downmix if stereo audio should be mixed down to mono
+     */
+    public void setDownmix(boolean downmix) {
+        synchronized (this) {
+            setDownmix0(pointer, downmix);
+        }
+    }
+
     private native int getBitRate0(long decoderPointer);
 
     /**
@@ -97,6 +876,25 @@ public class Mp3Decoder implements Audio, AutoCloseable {
         }
     }
 
+    /**
+     * Gets the average bit rate of all frames, which differs from {@link #getBitRate()} for VBR files.
+     * Decoders created with an {@link InputStream} use the Xing tag if it was read for gapless decoding and the bit rate of the current frame otherwise.
+     *
+     * @return the average bit rate in kbit/s or -1 if the header of the mp3 file is not yet parsed
+     * @throws IOException if an I/O error occurs or the mp3 file is invalid
+     */
+    int getAverageBitRate() throws IOException {
+        synchronized (this) {
+            if (isSeekable()) {
+                return getSeekIndex().getAverageBitRate();
+            }
+            if (tagBitRate > 0) {
+                return tagBitRate;
+            }
+            return getBitRate();
+        }
+    }
+
     private native int getSampleRate0(long decoderPointer);
 
     /**
@@ -122,14 +920,48 @@ public class Mp3Decoder implements Audio, AutoCloseable {
         return Audio.super.createAudioFormat();
     }
 
-    private native void destroyDecoder0(long decoderPointer);
+    private static native void clearDecoder0(long decoderPointer);
 
+    /**
+     * Resets a native context to the state of a newly created context.
+     *
+     * @param pointer the native context
+     */
+    static void resetContext(long pointer) {
+        clearDecoder0(pointer);
+    }
+
+    private static native void destroyDecoder0(long decoderPointer);
+
+    static void destroyContext(long pointer) {
+        destroyDecoder0(pointer);
+        Mp3Metrics.decoderDestroyed();
+    }
+
+    /**
+     * Closes the decoder and the stream or channel it reads from.
+     * If the decoder was acquired from a {@link Mp3DecoderPool}, the native context is returned to the pool.
+     *
+     * @throws IOException if an I/O error occurs
+     */
     @Override
     public void close() throws IOException {
         synchronized (this) {
-            destroyDecoder0(pointer);
-            pointer = 0L;
-            inputStream.close();
+            if (pointer != 0L) {
+                if (pool != null) {
+                    cleanable.release();
+                    pool.release(pointer);
+                } else {
+                    cleanable.clean();
+                }
+                pointer = 0L;
+            }
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
         }
     }
 
@@ -139,6 +971,46 @@ public class Mp3Decoder implements Audio, AutoCloseable {
         }
     }
 
+    /**
+     * Decodes the mp3 file on all threads of the common {@link ForkJoinPool}.
+     * The file is memory mapped and split into chunks of frames that are decoded in parallel.
+     * The decoded samples are the same as when decoding the file with {@link #decode(InputStream)}.
+     * <br/>
+     * <b>NOTE</b>: Files larger than 2 GiB can't be mapped and are decoded on a single thread instead.
+     *
+     * @param path the path of the mp3 file
+     * @return the decoded audio data as PCM samples
+     * @throws IOException              if an I/O error occurs or the mp3 file is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static DecodedAudio decodeParallel(Path path) throws IOException, UnknownPlatformException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            if (size > Integer.MAX_VALUE) {
+                try (Mp3Decoder decoder = new Mp3Decoder(fileChannel)) {
+                    return decoder.decodeAll(decoder.getExpectedSampleCount());
+                }
+            }
+            return decodeParallel(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0L, size), ForkJoinPool.commonPool());
+        }
+    }
+
+    /**
+     * Decodes the mp3 data between the position and the limit of the given buffer on the given pool.
+     * The data is split into chunks of frames that are decoded in parallel, each with its own native decoder.
+     * The decoded samples are the same as when decoding the data with a single decoder.
+     * The position of the given buffer is not modified.
+     *
+     * @param input a direct buffer containing the mp3 data
+     * @param pool  the pool to decode the chunks on
+     * @return the decoded audio data as PCM samples
+     * @throws IOException              if an I/O error occurs or the mp3 data is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static DecodedAudio decodeParallel(ByteBuffer input, ForkJoinPool pool) throws IOException, UnknownPlatformException {
+        return ParallelMp3Decoder.decode(checkDirect(input).slice(), pool);
+    }
+
     /**
      * Decodes the mp3 file and returns the decoded audio data.
      *
@@ -149,21 +1021,106 @@ public class Mp3Decoder implements Audio, AutoCloseable {
      */
     public static DecodedAudio decode(InputStream inputStream) throws IOException, UnknownPlatformException {
         try (Mp3Decoder decoder = new Mp3Decoder(inputStream)) {
-            ShortArrayBuffer sampleBuffer = new ShortArrayBuffer(2048);
+            return decoder.decodeAll(-1L);
+        }
+    }
+
+    /**
+     * Decodes the mp3 file and returns the decoded audio data.
+     * The file is memory mapped and the storage for the samples is allocated with the exact size,
+     * which is calculated from the frame headers before decoding.
+     *
+     * @param path the path of the mp3 file
+     * @return the decoded audio data as PCM samples
+     * @throws IOException              if an I/O error occurs or the mp3 file is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static DecodedAudio decode(Path path) throws IOException, UnknownPlatformException {
+        try (Mp3Decoder decoder = map(path)) {
+            return decoder.decodeAll(decoder.getExpectedSampleCount());
+        }
+    }
+
+    /**
+     * @return the number of samples of all channels calculated from the frame headers or the LAME tag
+     * @throws IOException if an I/O error occurs or the mp3 file is invalid
+     */
+    private long getExpectedSampleCount() throws IOException {
+        Mp3SeekIndex index = getSeekIndex();
+        return getSampleCount() * index.getChannelCount();
+    }
+
+    /**
+     * Decodes all remaining frames.
+     * The samples are stored in chunks, so no samples are copied to grow the storage and the size is not limited by the maximum array length.
+     *
+     * @param expectedSampleCount the expected number of samples of all channels or -1 if unknown
+     * @return the decoded audio data
+     * @throws IOException if an I/O error occurs or the mp3 data is invalid
+     */
+    private DecodedAudio decodeAll(long expectedSampleCount) throws IOException {
+        ShortChunkBuffer sampleBuffer = new ShortChunkBuffer(expectedSampleCount);
+        short[] frames = new short[getMaxSamplesPerFrame() * 16];
+        while (true) {
+            int samples = decodeFrames(frames, 0, frames.length);
+            if (samples < 0) {
+                if (sampleBuffer.size() <= 0L) {
+                    throw new IOException("No audio data found");
+                }
+                break;
+            }
+            sampleBuffer.write(frames, 0, samples);
+        }
+        if (!headerParsed()) {
+            throw new IOException("No header found");
+        }
+        return new DecodedAudio(getChannelCount(), getSampleRate(), getBitRate(), sampleBuffer.toChunks());
+    }
+
+    /**
+     * Decodes the mp3 file without the encoder delay and padding and returns the decoded audio data.
+     * The storage for the samples is allocated with the exact length stored in the LAME tag.
+     * See {@link #setGapless(boolean)}.
+     *
+     * @param path the path of the mp3 file
+     * @return the decoded audio data as PCM samples
+     * @throws IOException              if an I/O error occurs or the mp3 file is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static DecodedAudio decodeGapless(Path path) throws IOException, UnknownPlatformException {
+        try (Mp3Decoder decoder = map(path)) {
+            decoder.setGapless(true);
+            return decoder.decodeAll(decoder.getExpectedSampleCount());
+        }
+    }
+
+    /**
+     * Decodes the mp3 file and returns the decoded audio data as floating point samples in the range of -1.0 to 1.0.
+     * The samples are not rounded to 16 bit, so they keep the full resolution of the decoder.
+     *
+     * @param inputStream the input stream of the mp3 file
+     * @return the decoded audio data as floating point samples
+     * @throws IOException              if an I/O error occurs or the mp3 file is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static DecodedFloatAudio decodeFloat(InputStream inputStream) throws IOException, UnknownPlatformException {
+        try (Mp3Decoder decoder = new Mp3Decoder(inputStream)) {
+            FloatChunkBuffer sampleBuffer = new FloatChunkBuffer(-1L);
+            float[] frames = new float[decoder.getMaxSamplesPerFrame() * 16];
             while (true) {
-                short[] samples = decoder.decodeNextFrame();
-                if (samples == null) {
-                    if (sampleBuffer.size() <= 0) {
+                int samples = decoder.decodeFrames(frames, 0, frames.length);
+                if (samples < 0) {
+                    if (sampleBuffer.size() <= 0L) {
                         throw new IOException("No audio data found");
                     }
                     break;
                 }
-                sampleBuffer.writeShorts(samples);
+                sampleBuffer.write(frames, 0, samples);
             }
             if (!decoder.headerParsed()) {
                 throw new IOException("No header found");
             }
-            return new DecodedAudio(decoder.getChannelCount(), decoder.getSampleRate(), decoder.getBitRate(), sampleBuffer.toShortArray());
+            return new DecodedFloatAudio(decoder.getChannelCount(), decoder.getSampleRate(), decoder.getBitRate(), sampleBuffer.toChunks());
         }
     }
 
@@ -0,0 +1,150 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of native minimp3 contexts.
+ * Decoders acquired from this pool reuse the contexts of closed decoders.
+ * Reused contexts are reset to the state of a new context, so the decoded audio is the same as with a new decoder.
+ */
+public class Mp3DecoderPool implements AutoCloseable {
+
+    /**
+     * All decoder contexts are interchangeable, so they share a single key.
+     */
+    private static final Object KEY = new Object();
+
+    private final NativeContextPool<Object> contexts;
+
+    /**
+     * @param maxIdle     the maximum number of idle contexts kept in the pool
+     * @param idleTimeout the time after which an idle context is destroyed
+     * @param unit        the unit of the idle timeout
+     */
+    public Mp3DecoderPool(int maxIdle, long idleTimeout, TimeUnit unit) {
+        contexts = new NativeContextPool<>(maxIdle, idleTimeout, unit, Mp3Decoder::destroyContext);
+    }
+
+    /**
+     * Creates a decoder that reads from the given stream.
+     * See {@link Mp3Decoder#Mp3Decoder(InputStream)}.
+     *
+     * @param inputStream the input stream of the mp3 file
+     * @return the decoder
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public Mp3Decoder acquire(InputStream inputStream) throws IOException, UnknownPlatformException {
+        return new Mp3Decoder(this, poll(), inputStream, null, null);
+    }
+
+    /**
+     * Creates a decoder that reads from the given buffer.
+     * See {@link Mp3Decoder#Mp3Decoder(ByteBuffer)}.
+     *
+     * @param input a direct buffer containing the mp3 data
+     * @return the decoder
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public Mp3Decoder acquire(ByteBuffer input) throws IOException, UnknownPlatformException {
+        return new Mp3Decoder(this, poll(), null, null, input);
+    }
+
+    /**
+     * Creates a decoder that reads from the given channel.
+     * See {@link Mp3Decoder#Mp3Decoder(SeekableByteChannel)}.
+     *
+     * @param channel the channel of the mp3 file
+     * @return the decoder
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public Mp3Decoder acquire(SeekableByteChannel channel) throws IOException, UnknownPlatformException {
+        return new Mp3Decoder(this, poll(), null, channel, null);
+    }
+
+    /**
+     * Creates a decoder that memory maps the given file.
+     * See {@link Mp3Decoder#map(Path)}.
+     *
+     * @param path the path of the mp3 file
+     * @return the decoder
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public Mp3Decoder map(Path path) throws IOException, UnknownPlatformException {
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = fileChannel.size();
+            if (size > Integer.MAX_VALUE) {
+                return acquire(fileChannel);
+            }
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+            fileChannel.close();
+            return acquire(buffer);
+        } catch (Throwable t) {
+            fileChannel.close();
+            throw t;
+        }
+    }
+
+    /**
+     * @return an idle context or a new context if there is none
+     */
+    private long poll() throws IOException, UnknownPlatformException {
+        if (contexts.isClosed()) {
+            throw new IllegalStateException("Pool is closed");
+        }
+        long pointer = contexts.poll(KEY);
+        if (pointer == 0L) {
+            pointer = Mp3Decoder.createContext();
+        }
+        return pointer;
+    }
+
+    /**
+     * Resets the context of a closed decoder and puts it back into the pool.
+     *
+     * @param pointer the native context
+     */
+    void release(long pointer) {
+        Mp3Decoder.resetContext(pointer);
+        contexts.release(KEY, pointer);
+    }
+
+    /**
+     * Destroys all contexts that were idle for longer than the idle timeout.
+     * This also happens whenever a decoder is acquired or closed.
+     */
+    public void evictIdle() {
+        contexts.evictIdle();
+    }
+
+    /**
+     * @return the number of idle contexts in the pool
+     */
+    public int getIdleCount() {
+        return contexts.getIdleCount();
+    }
+
+    /**
+     * Destroys all idle contexts.
+     * Decoders that are still in use can be used until they are closed, their contexts are destroyed afterward.
+     */
+    @Override
+    public void close() {
+        contexts.close();
+    }
+
+}
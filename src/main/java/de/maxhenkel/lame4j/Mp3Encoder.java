@@ -1,17 +1,46 @@
 package de.maxhenkel.lame4j;
 
-import de.maxhenkel.nativeutils.NativeInitializer;
 import de.maxhenkel.nativeutils.UnknownPlatformException;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 public class Mp3Encoder implements AutoCloseable {
 
+    /**
+     * The maximum number of bytes that can be produced when flushing the encoder.
+     */
+    public static final int FLUSH_BUFFER_SIZE = 7200;
+
     private long pointer;
+    private final NativeCleaner.Cleanable cleanable;
+    private final Mp3EncoderConfig config;
     private final OutputStream outputStream;
+    @Nullable
+    private final SeekableByteChannel channel;
+    /**
+     * The position in the channel where the first frame is written, which is replaced with the LAME tag when closing the encoder.
+     */
+    private final long tagPosition;
+    private boolean flushed;
+    private byte[] outBuffer;
+    @Nullable
+    private byte[] lameTag;
+    @Nullable
+    private Mp3MetricsListener metricsListener;
 
     /**
+     * Creates a constant bit rate encoder.
+     *
      * @param channels     the number of channels of the audio data - Valid values are 1 and 2
      * @param sampleRate   the sample rate of the audio data
      * @param bitRate      the target bit rate of the encoded audio data
@@ -21,16 +50,103 @@ public class Mp3Encoder implements AutoCloseable {
      * @throws UnknownPlatformException if the operating system is not supported
      */
     public Mp3Encoder(int channels, int sampleRate, int bitRate, int quality, OutputStream outputStream) throws IOException, UnknownPlatformException {
-        synchronized (Mp3Encoder.class) {
-            NativeInitializer.load("liblame4j");
-            this.pointer = createEncoder0(channels, sampleRate, bitRate, quality);
-            this.outputStream = outputStream;
-        }
+        this(Mp3EncoderConfig.builder(channels, sampleRate).cbr(bitRate).quality(quality).build(), outputStream);
+    }
+
+    /**
+     * @param config       the settings of the encoder
+     * @param outputStream the output stream to write the encoded audio data to
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public Mp3Encoder(Mp3EncoderConfig config, OutputStream outputStream) throws IOException, UnknownPlatformException {
+        this(config, false, true, outputStream);
     }
 
-    private static native long createEncoder0(int channels, int sampleRate, int bitRate, int quality) throws IOException;
+    /**
+     * @param config           the settings of the encoder
+     * @param disableReservoir if the bit reservoir should be disabled, so that every frame can be decoded without the frames before it - This slightly lowers the quality
+     * @param writeVbrTag      if the first frame should be reserved for a Xing/LAME tag - Streams that are sent while encoding should not contain a tag
+     * @param outputStream     the output stream to write the encoded audio data to
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public Mp3Encoder(Mp3EncoderConfig config, boolean disableReservoir, boolean writeVbrTag, OutputStream outputStream) throws IOException, UnknownPlatformException {
+        this(createContext(config, disableReservoir, writeVbrTag), config, outputStream, null, -1L);
+    }
+
+    /**
+     * Creates an encoder that writes an accurate Info/LAME tag.
+     * The first frame is reserved for the tag and overwritten with it when closing the encoder,
+     * so the tag contains the exact number of frames, the encoder delay and the padding.
+     * Decoders use these values to play the audio without gaps, see {@link Mp3Decoder#setGapless(boolean)}.
+     *
+     * @param config  the settings of the encoder
+     * @param channel the channel to write the encoded audio data to, starting at its current position - The channel is closed when closing the encoder
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public Mp3Encoder(Mp3EncoderConfig config, SeekableByteChannel channel) throws IOException, UnknownPlatformException {
+        // The position is read before creating the native context, so the context can't leak if the channel fails
+        this(config, channel, channel.position());
+    }
 
-    private native byte[] writeInternal0(long encoderPointer, short[] input) throws IOException;
+    private Mp3Encoder(Mp3EncoderConfig config, SeekableByteChannel channel, long tagPosition) throws IOException, UnknownPlatformException {
+        this(createContext(config, false, true), config, Channels.newOutputStream(channel), channel, tagPosition);
+    }
+
+    /**
+     * @param pointer      the native context
+     * @param config       the settings the native context was created with
+     * @param outputStream the output stream to write the encoded audio data to
+     * @param channel      the channel the output stream writes to or <code>null</code> if the LAME tag should not be written
+     * @param tagPosition  the position of the first frame in the channel
+     */
+    private Mp3Encoder(long pointer, Mp3EncoderConfig config, OutputStream outputStream, @Nullable SeekableByteChannel channel, long tagPosition) {
+        this.pointer = pointer;
+        this.cleanable = NativeCleaner.register(this, "Mp3Encoder", pointer, Mp3Encoder::destroyContext);
+        this.config = config;
+        this.outputStream = outputStream;
+        this.channel = channel;
+        this.tagPosition = tagPosition;
+        this.outBuffer = new byte[0];
+        this.metricsListener = Mp3Metrics.getListener();
+    }
+
+    /**
+     * Creates a native encoder context.
+     *
+     * @param config           the settings of the encoder
+     * @param disableReservoir if the bit reservoir should be disabled
+     * @param writeVbrTag      if the first frame should be reserved for a Xing/LAME tag
+     * @return the pointer of the native context
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    static long createContext(Mp3EncoderConfig config, boolean disableReservoir, boolean writeVbrTag) throws IOException, UnknownPlatformException {
+        NativeLibrary.load();
+        long pointer = createEncoder0(
+                config.getChannels(),
+                config.getSampleRate(),
+                config.getBitRateMode().ordinal(),
+                config.getBitRate(),
+                config.getVbrQuality(),
+                config.getMinBitRate(),
+                config.getMaxBitRate(),
+                config.getLowpassFrequency(),
+                config.getQuality(),
+                config.getOutSampleRate(),
+                config.getChannelMode().ordinal(),
+                disableReservoir,
+                writeVbrTag
+        );
+        Mp3Metrics.encoderCreated();
+        return pointer;
+    }
+
+    private static native long createEncoder0(int channels, int sampleRate, int bitRateMode, int bitRate, float vbrQuality, int minBitRate, int maxBitRate, int lowpassFrequency, int quality, int outSampleRate, int channelMode, boolean disableReservoir, boolean writeVbrTag) throws IOException;
+
+    private native int encode0(long encoderPointer, short[] input, int inputOffset, int inputLength, byte[] output, int outputOffset) throws IOException;
 
     /**
      * Writes the given samples to the output stream.
@@ -39,34 +155,435 @@ public class Mp3Encoder implements AutoCloseable {
      * @throws IOException if an I/O error occurs
      */
     public void write(short[] input) throws IOException {
+        write(input, 0, input.length);
+    }
+
+    /**
+     * Writes the given samples to the output stream.
+     * The native encoder and this encoder reuse their buffers for every call, so writing chunks of the same size doesn't allocate any memory.
+     *
+     * @param input  the array containing the samples to write
+     * @param offset the offset of the first sample in the array
+     * @param length the number of samples to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(short[] input, int offset, int length) throws IOException {
         synchronized (this) {
-            byte[] buffer = writeInternal0(pointer, input);
-            outputStream.write(buffer, 0, buffer.length);
+            byte[] buffer = getOutBuffer(getMaxEncodedSize(length));
+            long start = startMetrics();
+            int bytesWritten = encode0(pointer, input, offset, length, buffer, 0);
+            writeOutput(buffer, bytesWritten, length, start);
         }
     }
 
-    private native byte[] flush0(long encoderPointer) throws IOException;
+    /**
+     * Encodes the given samples and writes the mp3 data into the given array instead of the output stream.
+     * <br/>
+     * <b>NOTE</b>: The output array needs to have space for at least {@link #getMaxEncodedSize(int)} bytes after the offset.
+     *
+     * @param input        the array containing the samples to encode
+     * @param inputOffset  the offset of the first sample in the array
+     * @param inputLength  the number of samples to encode
+     * @param output       the array to write the mp3 data to
+     * @param outputOffset the offset in the output array to start writing at
+     * @return the number of bytes written to the output array
+     * @throws IOException if an I/O error occurs
+     */
+    public int encode(short[] input, int inputOffset, int inputLength, byte[] output, int outputOffset) throws IOException {
+        if (outputOffset < 0 || outputOffset > output.length || output.length - outputOffset < getMaxEncodedSize(inputLength)) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
+        synchronized (this) {
+            long start = startMetrics();
+            int bytesWritten = encode0(pointer, input, inputOffset, inputLength, output, outputOffset);
+            recordEncode(inputLength, bytesWritten, start);
+            return bytesWritten;
+        }
+    }
+
+    private native int writeDirect0(long encoderPointer, ShortBuffer input, int inputOffset, int inputLength, byte[] output, int outputOffset) throws IOException;
+
+    /**
+     * Writes the remaining samples of the given buffer to the output stream.
+     * The samples are read directly from the memory of the buffer and the position of the buffer is advanced to its limit.
+     *
+     * @param input the direct buffer in native byte order containing the samples to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(ShortBuffer input) throws IOException {
+        checkDirect(input);
+        synchronized (this) {
+            int length = input.remaining();
+            byte[] buffer = getOutBuffer(getMaxEncodedSize(length));
+            long start = startMetrics();
+            int bytesWritten = writeDirect0(pointer, input, input.position(), length, buffer, 0);
+            input.position(input.limit());
+            writeOutput(buffer, bytesWritten, length, start);
+        }
+    }
+
+    private native int encodeFloat0(long encoderPointer, float[] input, int inputOffset, int inputLength, byte[] output, int outputOffset) throws IOException;
+
+    /**
+     * Writes the given floating point samples to the output stream.
+     *
+     * @param input the samples to write - In the range of -1.0 to 1.0
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(float[] input) throws IOException {
+        write(input, 0, input.length);
+    }
+
+    /**
+     * Writes the given floating point samples to the output stream.
+     * The samples are passed to LAME without converting them to 16 bit first, so they keep their full resolution.
+     *
+     * @param input  the array containing the samples to write - In the range of -1.0 to 1.0
+     * @param offset the offset of the first sample in the array
+     * @param length the number of samples to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(float[] input, int offset, int length) throws IOException {
+        synchronized (this) {
+            byte[] buffer = getOutBuffer(getMaxEncodedSize(length));
+            long start = startMetrics();
+            int bytesWritten = encodeFloat0(pointer, input, offset, length, buffer, 0);
+            writeOutput(buffer, bytesWritten, length, start);
+        }
+    }
+
+    private native int writeFloatDirect0(long encoderPointer, FloatBuffer input, int inputOffset, int inputLength, byte[] output, int outputOffset) throws IOException;
+
+    /**
+     * Writes the remaining floating point samples of the given buffer to the output stream.
+     * The samples are read directly from the memory of the buffer and the position of the buffer is advanced to its limit.
+     *
+     * @param input the direct buffer in native byte order containing the samples to write - In the range of -1.0 to 1.0
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(FloatBuffer input) throws IOException {
+        if (!input.isDirect() || input.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("Input buffer must be direct and in native byte order");
+        }
+        synchronized (this) {
+            int length = input.remaining();
+            byte[] buffer = getOutBuffer(getMaxEncodedSize(length));
+            long start = startMetrics();
+            int bytesWritten = writeFloatDirect0(pointer, input, input.position(), length, buffer, 0);
+            input.position(input.limit());
+            writeOutput(buffer, bytesWritten, length, start);
+        }
+    }
 
-    private native void destroyEncoder0(long encoderPointer);
+    /**
+     * Sets the listener this encoder reports to, replacing the global listener the encoder was created with.
+     *
+     * @param listener the listener or <code>null</code> to disable metrics for this encoder
+     */
+    public void setMetricsListener(@Nullable Mp3MetricsListener listener) {
+        synchronized (this) {
+            metricsListener = listener;
+        }
+    }
+
+    /**
+     * @return the start time of a measurement or 0 if metrics are disabled
+     */
+    private long startMetrics() {
+        return metricsListener == null ? 0L : System.nanoTime();
+    }
+
+    private void recordEncode(int samples, int bytes, long start) {
+        Mp3MetricsListener listener = metricsListener;
+        if (listener != null) {
+            listener.encoded(samples, bytes, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes the encoded mp3 data to the output stream and reports the time spent encoding and writing.
+     *
+     * @param buffer  the buffer containing the mp3 data
+     * @param length  the number of bytes to write
+     * @param samples the number of samples that were encoded
+     * @param start   the time encoding started
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeOutput(byte[] buffer, int length, int samples, long start) throws IOException {
+        Mp3MetricsListener listener = metricsListener;
+        if (listener == null) {
+            outputStream.write(buffer, 0, length);
+            return;
+        }
+        long encoded = System.nanoTime();
+        listener.encoded(samples, length, encoded - start);
+        outputStream.write(buffer, 0, length);
+        listener.outputWritten(length, System.nanoTime() - encoded);
+    }
+
+    /**
+     * Gets the buffer that is used to pass the mp3 data to the output stream, growing it if it is too small.
+     *
+     * @param size the minimum size of the buffer
+     * @return the buffer
+     */
+    private byte[] getOutBuffer(int size) {
+        if (outBuffer.length < size) {
+            outBuffer = new byte[size];
+        }
+        return outBuffer;
+    }
+
+    private native int encodeDirect0(long encoderPointer, ShortBuffer input, int inputOffset, int inputLength, ByteBuffer output, int outputOffset, int outputLength) throws IOException;
+
+    /**
+     * Encodes the remaining samples of the given buffer and writes the mp3 data into the output buffer instead of the output stream.
+     * Neither the samples nor the mp3 data are copied through the Java heap.
+     * The position of the input buffer is advanced to its limit and the position of the output buffer is advanced by the number of bytes written.
+     * <br/>
+     * <b>NOTE</b>: The output buffer needs to have at least {@link #getMaxEncodedSize(int)} bytes remaining.
+     *
+     * @param input  the direct buffer in native byte order containing the samples to encode
+     * @param output the direct buffer to write the mp3 data to
+     * @return the number of bytes written to the output buffer
+     * @throws IOException if an I/O error occurs
+     */
+    public int encode(ShortBuffer input, ByteBuffer output) throws IOException {
+        checkDirect(input);
+        if (!output.isDirect()) {
+            throw new IllegalArgumentException("Output buffer must be direct");
+        }
+        synchronized (this) {
+            int length = input.remaining();
+            long start = startMetrics();
+            int bytesWritten = encodeDirect0(pointer, input, input.position(), length, output, output.position(), output.remaining());
+            recordEncode(length, bytesWritten, start);
+            input.position(input.limit());
+            output.position(output.position() + bytesWritten);
+            return bytesWritten;
+        }
+    }
+
+    private static void checkDirect(ShortBuffer buffer) {
+        if (!buffer.isDirect() || buffer.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("Input buffer must be direct and in native byte order");
+        }
+    }
+
+    /**
+     * @param samples the number of samples to encode
+     * @return the maximum number of bytes the given number of samples can be encoded to
+     */
+    public static int getMaxEncodedSize(int samples) {
+        return (int) Math.ceil(1.25D * samples + 7200D);
+    }
+
+    private native int flush0(long encoderPointer, byte[] output, int outputOffset) throws IOException;
+
+    private native int flushDirect0(long encoderPointer, ByteBuffer output, int outputOffset, int outputLength) throws IOException;
+
+    /**
+     * Flushes the remaining mp3 data into the given buffer instead of the output stream.
+     * Closing the encoder afterward won't write any more data to the output stream.
+     * <br/>
+     * <b>NOTE</b>: The output buffer needs to have at least {@link #FLUSH_BUFFER_SIZE} bytes remaining.
+     *
+     * @param output the direct buffer to write the mp3 data to
+     * @return the number of bytes written to the output buffer
+     * @throws IOException if an I/O error occurs
+     */
+    public int flush(ByteBuffer output) throws IOException {
+        if (!output.isDirect()) {
+            throw new IllegalArgumentException("Output buffer must be direct");
+        }
+        synchronized (this) {
+            if (flushed) {
+                throw new IllegalStateException("Encoder is already flushed");
+            }
+            long start = startMetrics();
+            int bytesWritten = flushDirect0(pointer, output, output.position(), output.remaining());
+            recordEncode(0, bytesWritten, start);
+            flushed = true;
+            output.position(output.position() + bytesWritten);
+            return bytesWritten;
+        }
+    }
+
+    /**
+     * @return the settings of this encoder
+     */
+    public Mp3EncoderConfig getConfig() {
+        return config;
+    }
+
+    private native int getLameTagFrame0(long encoderPointer, byte[] output, int outputOffset) throws IOException;
+
+    /**
+     * Gets the Info/LAME tag that replaces the reserved first frame of the mp3 data.
+     * The tag contains the number of frames, the encoder delay and the padding, which are only known after flushing the encoder.
+     * Encoders writing to a {@link SeekableByteChannel} write the tag themselves,
+     * for other outputs it can be written over the first frame after closing the encoder.
+     *
+     * @return the tag frame or <code>null</code> if the encoder is not closed yet or doesn't reserve a frame for the tag
+     */
+    @Nullable
+    public byte[] getLameTag() {
+        synchronized (this) {
+            return lameTag;
+        }
+    }
+
+    private void writeLameTag(SeekableByteChannel channel, byte[] tag) throws IOException {
+        long end = channel.position();
+        channel.position(tagPosition);
+        ByteBuffer buffer = ByteBuffer.wrap(tag);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.position(end);
+    }
+
+    private native int getEncoderDelay0(long encoderPointer);
+
+    /**
+     * @return the number of samples per channel the encoder adds to the start of the audio
+     */
+    public int getEncoderDelay() {
+        synchronized (this) {
+            return getEncoderDelay0(pointer);
+        }
+    }
+
+    private native int getFrameSize0(long encoderPointer);
+
+    /**
+     * @return the number of samples per channel in a single frame
+     */
+    public int getFrameSize() {
+        synchronized (this) {
+            return getFrameSize0(pointer);
+        }
+    }
+
+    private native int getOutSampleRate0(long encoderPointer);
+
+    /**
+     * @return the sample rate of the encoded audio, which can differ from the sample rate of the input if LAME resamples it
+     */
+    public int getOutSampleRate() {
+        synchronized (this) {
+            return getOutSampleRate0(pointer);
+        }
+    }
+
+    private native int getLowpassFrequency0(long encoderPointer);
+
+    /**
+     * @return the lowpass frequency in Hz or -1 if the lowpass filter is disabled
+     */
+    int getLowpassFrequency() {
+        synchronized (this) {
+            return getLowpassFrequency0(pointer);
+        }
+    }
+
+    private static native String getLameVersion0();
+
+    /**
+     * @return the short LAME version string (e.g. LAME3.100)
+     * @throws IOException              if the native library could not be loaded
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    static String getLameVersion() throws IOException, UnknownPlatformException {
+        NativeLibrary.load();
+        return getLameVersion0();
+    }
+
+    private static native void destroyEncoder0(long encoderPointer);
+
+    static void destroyContext(long pointer) {
+        destroyEncoder0(pointer);
+        Mp3Metrics.encoderDestroyed();
+    }
 
     /**
      * Finalizes the mp3 file and closes the output stream.
+     * If the output is a {@link SeekableByteChannel}, the Info/LAME tag is written over the reserved first frame.
      *
      * @throws IOException if an I/O error occurs
      */
     @Override
     public void close() throws IOException {
         synchronized (this) {
-            byte[] flushBuffer = flush0(pointer);
-
-            outputStream.write(flushBuffer, 0, flushBuffer.length);
+            try {
+                if (!flushed) {
+                    byte[] flushBuffer = getOutBuffer(FLUSH_BUFFER_SIZE);
+                    long start = startMetrics();
+                    int bytesWritten = flush0(pointer, flushBuffer, 0);
+                    flushed = true;
 
-            destroyEncoder0(pointer);
-            pointer = 0L;
-            outputStream.close();
+                    writeOutput(flushBuffer, bytesWritten, 0, start);
+                }
+                // The tag can only be created by a flushed context
+                if (pointer != 0L) {
+                    byte[] tagBuffer = getOutBuffer(FLUSH_BUFFER_SIZE);
+                    int tagSize = getLameTagFrame0(pointer, tagBuffer, 0);
+                    if (tagSize > 0) {
+                        lameTag = Arrays.copyOf(tagBuffer, tagSize);
+                        if (channel != null) {
+                            writeLameTag(channel, lameTag);
+                        }
+                    }
+                }
+            } finally {
+                if (pointer != 0L) {
+                    cleanable.clean();
+                    pointer = 0L;
+                }
+                outputStream.close();
+            }
         }
     }
 
+    /**
+     * Encodes the given samples on all threads of the common {@link ForkJoinPool} and writes them to the given output stream.
+     * See {@link #encodeParallel(short[], int, int, int, int, OutputStream, ForkJoinPool)}.
+     *
+     * @param samples      the interleaved samples to encode
+     * @param channels     the number of channels of the audio data - Valid values are 1 and 2
+     * @param sampleRate   the sample rate of the audio data
+     * @param bitRate      the bit rate of the encoded audio data
+     * @param quality      the quality of the encoded audio data - Valid values are 0 (highest) to 9 (lowest)
+     * @param outputStream the output stream to write the encoded audio data to - The stream is not closed
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public static void encodeParallel(short[] samples, int channels, int sampleRate, int bitRate, int quality, OutputStream outputStream) throws IOException, UnknownPlatformException {
+        encodeParallel(samples, channels, sampleRate, bitRate, quality, outputStream, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Encodes the given samples on the given pool and writes them to the given output stream.
+     * The samples are split into segments that are encoded in parallel, each with its own LAME encoder.
+     * The frames of all segments are joined into a single gapless stream that starts with a Xing/LAME tag containing the encoder delay and padding.
+     * <br/>
+     * <b>NOTE</b>: The bit reservoir is disabled, so that the frames of the segments can be joined.
+     * This slightly lowers the quality compared to encoding with a single encoder.
+     *
+     * @param samples      the interleaved samples to encode
+     * @param channels     the number of channels of the audio data - Valid values are 1 and 2
+     * @param sampleRate   the sample rate of the audio data
+     * @param bitRate      the bit rate of the encoded audio data
+     * @param quality      the quality of the encoded audio data - Valid values are 0 (highest) to 9 (lowest)
+     * @param outputStream the output stream to write the encoded audio data to - The stream is not closed
+     * @param pool         the pool to encode the segments on
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public static void encodeParallel(short[] samples, int channels, int sampleRate, int bitRate, int quality, OutputStream outputStream, ForkJoinPool pool) throws IOException, UnknownPlatformException {
+        new ParallelMp3Encoder(channels, sampleRate, bitRate, quality).encode(samples, outputStream, pool);
+    }
+
     public boolean isClosed() {
         synchronized (this) {
             return pointer == 0L;
@@ -0,0 +1,347 @@
+package de.maxhenkel.lame4j;
+
+import java.util.Objects;
+
+/**
+ * The settings of an {@link Mp3Encoder}.
+ * Use {@link #builder(int, int)} to create a config.
+ */
+public class Mp3EncoderConfig {
+
+    /**
+     * Uses the default lowpass frequency LAME chooses for the bit rate.
+     */
+    public static final int LOWPASS_AUTO = 0;
+    /**
+     * Disables the lowpass filter.
+     */
+    public static final int LOWPASS_DISABLED = -1;
+    /**
+     * Uses the output sample rate LAME chooses for the bit rate, which is usually the input sample rate.
+     */
+    public static final int SAMPLE_RATE_AUTO = 0;
+
+    private final int channels;
+    private final int sampleRate;
+    private final BitRateMode bitRateMode;
+    private final int bitRate;
+    private final float vbrQuality;
+    private final int minBitRate;
+    private final int maxBitRate;
+    private final int lowpassFrequency;
+    private final int quality;
+    private final int outSampleRate;
+    private final ChannelMode channelMode;
+
+    private Mp3EncoderConfig(Builder builder) {
+        channels = builder.channels;
+        sampleRate = builder.sampleRate;
+        bitRateMode = builder.bitRateMode;
+        bitRate = builder.bitRate;
+        vbrQuality = builder.vbrQuality;
+        minBitRate = builder.minBitRate;
+        maxBitRate = builder.maxBitRate;
+        lowpassFrequency = builder.lowpassFrequency;
+        quality = builder.quality;
+        outSampleRate = builder.outSampleRate;
+        channelMode = builder.channelMode;
+    }
+
+    /**
+     * @param channels   the number of channels of the audio data - Valid values are 1 and 2
+     * @param sampleRate the sample rate of the audio data
+     * @return a builder for a constant bit rate config with 128 kbps and quality 5
+     */
+    public static Builder builder(int channels, int sampleRate) {
+        return new Builder(channels, sampleRate);
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public BitRateMode getBitRateMode() {
+        return bitRateMode;
+    }
+
+    /**
+     * @return the bit rate in kbps for {@link BitRateMode#CBR} or the average bit rate for {@link BitRateMode#ABR}
+     */
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    /**
+     * @return the VBR quality for {@link BitRateMode#VBR} - 0 (highest) to 9.999 (lowest)
+     */
+    public float getVbrQuality() {
+        return vbrQuality;
+    }
+
+    /**
+     * @return the minimum bit rate in kbps for {@link BitRateMode#ABR} and {@link BitRateMode#VBR} or 0 if LAME chooses it
+     */
+    public int getMinBitRate() {
+        return minBitRate;
+    }
+
+    /**
+     * @return the maximum bit rate in kbps for {@link BitRateMode#ABR} and {@link BitRateMode#VBR} or 0 if LAME chooses it
+     */
+    public int getMaxBitRate() {
+        return maxBitRate;
+    }
+
+    /**
+     * @return the lowpass frequency in Hz, {@link #LOWPASS_AUTO} or {@link #LOWPASS_DISABLED}
+     */
+    public int getLowpassFrequency() {
+        return lowpassFrequency;
+    }
+
+    /**
+     * @return the quality of the encoding algorithm - 0 (highest) to 9 (lowest)
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * @return the sample rate of the encoded audio or {@link #SAMPLE_RATE_AUTO}
+     */
+    public int getOutSampleRate() {
+        return outSampleRate;
+    }
+
+    public ChannelMode getChannelMode() {
+        return channelMode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Mp3EncoderConfig that = (Mp3EncoderConfig) o;
+        return channels == that.channels
+                && sampleRate == that.sampleRate
+                && bitRateMode == that.bitRateMode
+                && bitRate == that.bitRate
+                && Float.compare(vbrQuality, that.vbrQuality) == 0
+                && minBitRate == that.minBitRate
+                && maxBitRate == that.maxBitRate
+                && lowpassFrequency == that.lowpassFrequency
+                && quality == that.quality
+                && outSampleRate == that.outSampleRate
+                && channelMode == that.channelMode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(channels, sampleRate, bitRateMode, bitRate, vbrQuality, minBitRate, maxBitRate, lowpassFrequency, quality, outSampleRate, channelMode);
+    }
+
+    public enum BitRateMode {
+        /**
+         * Constant bit rate.
+         */
+        CBR,
+        /**
+         * Average bit rate.
+         */
+        ABR,
+        /**
+         * Variable bit rate with a quality target.
+         */
+        VBR
+    }
+
+    public enum ChannelMode {
+        /**
+         * Mono for one input channel and joint stereo for two input channels.
+         */
+        AUTO,
+        /**
+         * Encodes both channels independently.
+         */
+        STEREO,
+        /**
+         * Encodes the sum and the difference of both channels when it saves bits.
+         */
+        JOINT_STEREO,
+        /**
+         * Encodes a single channel - Two input channels are mixed down by LAME.
+         */
+        MONO
+    }
+
+    public static class Builder {
+
+        private final int channels;
+        private final int sampleRate;
+        private BitRateMode bitRateMode;
+        private int bitRate;
+        private float vbrQuality;
+        private int minBitRate;
+        private int maxBitRate;
+        private int lowpassFrequency;
+        private int quality;
+        private int outSampleRate;
+        private ChannelMode channelMode;
+
+        private Builder(int channels, int sampleRate) {
+            this.channels = channels;
+            this.sampleRate = sampleRate;
+            bitRateMode = BitRateMode.CBR;
+            bitRate = 128;
+            vbrQuality = 4F;
+            lowpassFrequency = LOWPASS_AUTO;
+            quality = 5;
+            outSampleRate = SAMPLE_RATE_AUTO;
+            channelMode = ChannelMode.AUTO;
+        }
+
+        /**
+         * Encodes with a constant bit rate.
+         *
+         * @param bitRate the bit rate in kbps
+         * @return this builder
+         */
+        public Builder cbr(int bitRate) {
+            if (bitRate <= 0) {
+                throw new IllegalArgumentException("Bit rate must be positive");
+            }
+            bitRateMode = BitRateMode.CBR;
+            this.bitRate = bitRate;
+            return this;
+        }
+
+        /**
+         * Encodes with a variable bit rate that averages to the given bit rate.
+         *
+         * @param bitRate the average bit rate in kbps
+         * @return this builder
+         */
+        public Builder abr(int bitRate) {
+            if (bitRate <= 0) {
+                throw new IllegalArgumentException("Bit rate must be positive");
+            }
+            bitRateMode = BitRateMode.ABR;
+            this.bitRate = bitRate;
+            return this;
+        }
+
+        /**
+         * Encodes with a variable bit rate that targets the given quality.
+         * This is the same as the <code>-V</code> option of the LAME command line encoder.
+         *
+         * @param vbrQuality the quality - 0 (highest) to 9.999 (lowest)
+         * @return this builder
+         */
+        public Builder vbr(float vbrQuality) {
+            if (vbrQuality < 0F || vbrQuality >= 10F) {
+                throw new IllegalArgumentException("VBR quality must be between 0 and 9.999");
+            }
+            bitRateMode = BitRateMode.VBR;
+            this.vbrQuality = vbrQuality;
+            return this;
+        }
+
+        /**
+         * Sets the minimum bit rate of variable and average bit rate encoding.
+         *
+         * @param minBitRate the minimum bit rate in kbps or 0 if LAME should choose it
+         * @return this builder
+         */
+        public Builder minBitRate(int minBitRate) {
+            if (minBitRate < 0) {
+                throw new IllegalArgumentException("Bit rate must not be negative");
+            }
+            this.minBitRate = minBitRate;
+            return this;
+        }
+
+        /**
+         * Sets the maximum bit rate of variable and average bit rate encoding.
+         *
+         * @param maxBitRate the maximum bit rate in kbps or 0 if LAME should choose it
+         * @return this builder
+         */
+        public Builder maxBitRate(int maxBitRate) {
+            if (maxBitRate < 0) {
+                throw new IllegalArgumentException("Bit rate must not be negative");
+            }
+            this.maxBitRate = maxBitRate;
+            return this;
+        }
+
+        /**
+         * @param lowpassFrequency the lowpass frequency in Hz, {@link #LOWPASS_AUTO} or {@link #LOWPASS_DISABLED}
+         * @return this builder
+         */
+        public Builder lowpass(int lowpassFrequency) {
+            if (lowpassFrequency < LOWPASS_DISABLED) {
+                throw new IllegalArgumentException("Invalid lowpass frequency");
+            }
+            this.lowpassFrequency = lowpassFrequency;
+            return this;
+        }
+
+        /**
+         * @param quality the quality of the encoding algorithm - 0 (highest) to 9 (lowest)
+         * @return this builder
+         */
+        public Builder quality(int quality) {
+            this.quality = quality;
+            return this;
+        }
+
+        /**
+         * Sets the sample rate of the encoded audio.
+         * If it differs from the input sample rate, LAME resamples the audio while encoding.
+         * <br/>
+         * <b>NOTE</b>: The audio can only be downsampled, as {@link Mp3Encoder#getMaxEncodedSize(int)} assumes that the encoded audio doesn't have more samples than the input.
+         *
+         * @param outSampleRate the sample rate of the encoded audio or {@link #SAMPLE_RATE_AUTO} - Must not be higher than the input sample rate
+         * @return this builder
+         */
+        public Builder outSampleRate(int outSampleRate) {
+            if (outSampleRate < 0) {
+                throw new IllegalArgumentException("Sample rate must not be negative");
+            }
+            this.outSampleRate = outSampleRate;
+            return this;
+        }
+
+        /**
+         * @param channelMode the channel mode of the encoded audio
+         * @return this builder
+         */
+        public Builder channelMode(ChannelMode channelMode) {
+            this.channelMode = channelMode;
+            return this;
+        }
+
+        public Mp3EncoderConfig build() {
+            if (channels == 1 && (channelMode == ChannelMode.STEREO || channelMode == ChannelMode.JOINT_STEREO)) {
+                throw new IllegalArgumentException("Mono audio can't be encoded as stereo");
+            }
+            if (minBitRate > 0 && maxBitRate > 0 && minBitRate > maxBitRate) {
+                throw new IllegalArgumentException("Minimum bit rate must not be greater than maximum bit rate");
+            }
+            if (outSampleRate > sampleRate) {
+                throw new IllegalArgumentException("Output sample rate must not be higher than the input sample rate");
+            }
+            return new Mp3EncoderConfig(this);
+        }
+
+    }
+
+}
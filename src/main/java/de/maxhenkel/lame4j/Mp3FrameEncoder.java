@@ -0,0 +1,174 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * An encoder for live streams that passes every mp3 frame to a {@link Mp3FrameListener} as soon as LAME produces it.
+ * Unlike {@link Mp3Encoder}, the output is never split in the middle of a frame, so every frame can be sent as its own packet.
+ * The stream doesn't start with a Xing/LAME tag.
+ * <br/>
+ * If the bit reservoir is disabled, every frame can be decoded without the frames before it, so listeners can join the stream at any frame.
+ */
+public class Mp3FrameEncoder implements AutoCloseable {
+
+    private final FrameSplitter splitter;
+    private final Mp3Encoder encoder;
+
+    /**
+     * @param config           the settings of the encoder
+     * @param disableReservoir if the bit reservoir should be disabled, so that every frame can be decoded independently - This slightly lowers the quality
+     * @param listener         the listener that receives the frames on the thread that writes the samples
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public Mp3FrameEncoder(Mp3EncoderConfig config, boolean disableReservoir, Mp3FrameListener listener) throws IOException, UnknownPlatformException {
+        splitter = new FrameSplitter(listener);
+        encoder = new Mp3Encoder(config, disableReservoir, false, splitter);
+        splitter.samplePosition = -encoder.getEncoderDelay();
+    }
+
+    /**
+     * Encodes the given samples and passes all frames that are complete afterward to the listener.
+     *
+     * @param input the samples to encode
+     * @throws IOException if an I/O error occurs or the listener fails
+     */
+    public void write(short[] input) throws IOException {
+        encoder.write(input);
+    }
+
+    /**
+     * Encodes the given samples and passes all frames that are complete afterward to the listener.
+     *
+     * @param input  the array containing the samples to encode
+     * @param offset the offset of the first sample in the array
+     * @param length the number of samples to encode
+     * @throws IOException if an I/O error occurs or the listener fails
+     */
+    public void write(short[] input, int offset, int length) throws IOException {
+        encoder.write(input, offset, length);
+    }
+
+    /**
+     * Encodes the given floating point samples and passes all frames that are complete afterward to the listener.
+     *
+     * @param input  the array containing the samples to encode - In the range of -1.0 to 1.0
+     * @param offset the offset of the first sample in the array
+     * @param length the number of samples to encode
+     * @throws IOException if an I/O error occurs or the listener fails
+     */
+    public void write(float[] input, int offset, int length) throws IOException {
+        encoder.write(input, offset, length);
+    }
+
+    /**
+     * @return the number of samples per channel LAME adds to the start of the audio
+     */
+    public int getEncoderDelay() {
+        return encoder.getEncoderDelay();
+    }
+
+    /**
+     * @return the number of samples per channel in a single frame
+     */
+    public int getFrameSize() {
+        return encoder.getFrameSize();
+    }
+
+    /**
+     * @return the sample rate of the encoded audio
+     */
+    public int getOutSampleRate() {
+        return encoder.getOutSampleRate();
+    }
+
+    /**
+     * @return the number of frames passed to the listener
+     */
+    public long getFrameCount() {
+        synchronized (encoder) {
+            return splitter.frameCount;
+        }
+    }
+
+    /**
+     * Encodes the samples LAME still buffers and passes the last frames to the listener.
+     *
+     * @throws IOException if an I/O error occurs or the listener fails
+     */
+    @Override
+    public void close() throws IOException {
+        encoder.close();
+    }
+
+    public boolean isClosed() {
+        return encoder.isClosed();
+    }
+
+    /**
+     * Collects the output of the encoder and passes every complete frame to the listener.
+     * LAME always starts its output with a frame, so the headers are found by following the frame lengths.
+     */
+    private static class FrameSplitter extends OutputStream {
+
+        private final Mp3FrameListener listener;
+        private byte[] buffer;
+        private int length;
+        private long samplePosition;
+        private long frameCount;
+
+        private FrameSplitter(Mp3FrameListener listener) {
+            this.listener = listener;
+            buffer = new byte[4096];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len <= 0) {
+                return;
+            }
+            if (buffer.length - length < len) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + len));
+            }
+            System.arraycopy(b, off, buffer, length, len);
+            length += len;
+
+            int offset = 0;
+            while (length - offset >= Mp3FrameHeader.HEADER_SIZE) {
+                Mp3FrameHeader header = Mp3FrameHeader.parse(buffer, offset);
+                if (header == null) {
+                    throw new IOException("Encoder produced an invalid frame");
+                }
+                int frameSize = header.getFrameSize();
+                if (length - offset < frameSize) {
+                    break;
+                }
+                listener.frame(buffer, offset, frameSize, samplePosition);
+                samplePosition += header.getSamplesPerFrame();
+                frameCount++;
+                offset += frameSize;
+            }
+            if (offset > 0) {
+                System.arraycopy(buffer, offset, buffer, 0, length - offset);
+                length -= offset;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (length > 0) {
+                throw new IOException("Encoder produced an incomplete frame");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,325 @@
+package de.maxhenkel.lame4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * A parsed MPEG audio frame header.
+ */
+class Mp3FrameHeader {
+
+    /**
+     * The size of a frame header in bytes.
+     */
+    public static final int HEADER_SIZE = 4;
+
+    private static final int[][] BIT_RATES = {
+            // MPEG 1 layer 1, 2 and 3
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG 2 and 2.5 layer 1, 2 and 3
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+
+    private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+
+    private static final int VERSION_2_5 = 0;
+    private static final int VERSION_2 = 2;
+    private static final int VERSION_1 = 3;
+
+    private static final int MODE_MONO = 3;
+
+    private final int header;
+    private final int version;
+    private final int layer;
+    private final int bitRate;
+    private final int sampleRate;
+    private final int channelCount;
+    private final int samplesPerFrame;
+    private final int frameSize;
+
+    private Mp3FrameHeader(int header, int freeFormatSize) {
+        this.header = header;
+        version = (header >>> 19) & 0b11;
+        layer = 4 - ((header >>> 17) & 0b11);
+        int bitRateIndex = (header >>> 12) & 0b1111;
+        int sampleRateIndex = (header >>> 10) & 0b11;
+
+        int rate = SAMPLE_RATES[sampleRateIndex];
+        if (version == VERSION_2) {
+            rate /= 2;
+        } else if (version == VERSION_2_5) {
+            rate /= 4;
+        }
+        sampleRate = rate;
+        channelCount = ((header >>> 6) & 0b11) == MODE_MONO ? 1 : 2;
+
+        if (layer == 1) {
+            samplesPerFrame = 384;
+        } else if (layer == 3 && version != VERSION_1) {
+            samplesPerFrame = 576;
+        } else {
+            samplesPerFrame = 1152;
+        }
+
+        if (bitRateIndex == 0) {
+            frameSize = freeFormatSize + getPadding(header);
+            bitRate = (int) ((long) frameSize * 8L * sampleRate / samplesPerFrame / 1000L);
+        } else {
+            bitRate = BIT_RATES[(version == VERSION_1 ? 0 : 3) + layer - 1][bitRateIndex];
+            if (layer == 1) {
+                frameSize = 12 * bitRate * 1000 / sampleRate * 4 + getPadding(header);
+            } else {
+                frameSize = samplesPerFrame / 8 * bitRate * 1000 / sampleRate + getPadding(header);
+            }
+        }
+    }
+
+    /**
+     * Parses the frame header at the given position.
+     *
+     * @param data   the data containing the header
+     * @param offset the offset of the header
+     * @return the parsed header or <code>null</code> if there is no valid header at the given position
+     */
+    @Nullable
+    public static Mp3FrameHeader parse(byte[] data, int offset) {
+        if (offset < 0 || offset + HEADER_SIZE > data.length) {
+            return null;
+        }
+        return parse(read(data, offset));
+    }
+
+    /**
+     * Parses the given frame header.
+     * Free format frames are not supported.
+     *
+     * @param header the four header bytes in big endian order
+     * @return the parsed header or <code>null</code> if the header is not valid
+     */
+    @Nullable
+    public static Mp3FrameHeader parse(int header) {
+        return parse(header, 0);
+    }
+
+    /**
+     * Parses the given frame header.
+     * The header of a free format frame doesn't contain the bit rate, so the size of the frame has to be found by looking for the next header.
+     *
+     * @param header         the four header bytes in big endian order
+     * @param freeFormatSize the size of a free format frame without padding or 0 if it is not known
+     * @return the parsed header or <code>null</code> if the header is not valid or if it is a free format header and the size is not known
+     */
+    @Nullable
+    public static Mp3FrameHeader parse(int header, int freeFormatSize) {
+        if (!isValid(header)) {
+            return null;
+        }
+        if (isFreeFormat(header) && freeFormatSize <= 0) {
+            return null;
+        }
+        return new Mp3FrameHeader(header, freeFormatSize);
+    }
+
+    /**
+     * Reads the four header bytes at the given position.
+     *
+     * @param data   the data containing the header
+     * @param offset the offset of the header
+     * @return the header in big endian order
+     */
+    public static int read(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+    }
+
+    /**
+     * Checks the header the same way <code>hdr_valid</code> in minimp3 does.
+     * MPEG 2.5 is only accepted for layer 3 and free format headers are valid.
+     *
+     * @param header the four header bytes in big endian order
+     * @return if the header is valid
+     */
+    public static boolean isValid(int header) {
+        if ((header >>> 24) != 0xFF) {
+            return false;
+        }
+        int second = (header >>> 16) & 0xFF;
+        if ((second & 0xF0) != 0xF0 && (second & 0xFE) != 0xE2) {
+            return false;
+        }
+        if (((header >>> 17) & 0b11) == 0) {
+            return false;
+        }
+        if (((header >>> 12) & 0b1111) == 0b1111) {
+            return false;
+        }
+        return ((header >>> 10) & 0b11) != 0b11;
+    }
+
+    /**
+     * @param header the four header bytes in big endian order
+     * @return if the header has no bit rate
+     */
+    public static boolean isFreeFormat(int header) {
+        return ((header >>> 12) & 0b1111) == 0;
+    }
+
+    /**
+     * @param header the four header bytes in big endian order
+     * @return the number of padding bytes of the frame
+     */
+    public static int getPadding(int header) {
+        if (((header >>> 9) & 0b1) == 0) {
+            return 0;
+        }
+        return ((header >>> 17) & 0b11) == 0b11 ? 4 : 1;
+    }
+
+    /**
+     * Gets the layer 3 bit rate that is closest to the given bit rate, which is required for constant bit rate encoding.
+     *
+     * @param bitRate    the bit rate in kbit/s
+     * @param sampleRate the sample rate of the encoded audio - MPEG 2 and 2.5 have lower bit rates than MPEG 1
+     * @return the closest legal bit rate in kbit/s
+     */
+    public static int getNearestBitRate(int bitRate, int sampleRate) {
+        int[] bitRates = BIT_RATES[sampleRate >= 32000 ? 2 : 5];
+        int nearest = bitRates[1];
+        for (int i = 2; i < bitRates.length; i++) {
+            if (Math.abs(bitRates[i] - bitRate) < Math.abs(nearest - bitRate)) {
+                nearest = bitRates[i];
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Checks if the given header belongs to the same stream as this header.
+     * This compares the version, the layer, the sample rate and if the frames are free format, like <code>hdr_compare</code> in minimp3.
+     *
+     * @param other the other header
+     * @return if both headers are compatible
+     */
+    public boolean isCompatible(Mp3FrameHeader other) {
+        return isCompatible(other.header);
+    }
+
+    /**
+     * Checks if the given header is valid and belongs to the same stream as this header.
+     *
+     * @param other the four bytes of the other header in big endian order
+     * @return if both headers are compatible
+     */
+    public boolean isCompatible(int other) {
+        return isCompatible(header, other);
+    }
+
+    /**
+     * Checks if the second header is valid and belongs to the same stream as the first header.
+     *
+     * @param header the four bytes of the first header in big endian order
+     * @param other  the four bytes of the second header in big endian order
+     * @return if both headers are compatible
+     */
+    public static boolean isCompatible(int header, int other) {
+        return isValid(other) && ((header ^ other) & 0xFFFE0C00) == 0 && isFreeFormat(header) == isFreeFormat(other);
+    }
+
+    /**
+     * @return the raw header
+     */
+    public int getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the MPEG layer (1, 2 or 3)
+     */
+    public int getLayer() {
+        return layer;
+    }
+
+    /**
+     * @return if this is an MPEG 1 frame
+     */
+    public boolean isMpeg1() {
+        return version == VERSION_1;
+    }
+
+    /**
+     * @return if the header doesn't contain a bit rate and the frame size was found from the position of the next frame
+     */
+    public boolean isFreeFormat() {
+        return isFreeFormat(header);
+    }
+
+    /**
+     * @return the bit rate in kbps - For free format frames this is calculated from the frame size
+     */
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * @return the number of samples per channel in this frame
+     */
+    public int getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    /**
+     * @return the size of the frame in bytes including the header
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * @return if the frame has a CRC after the header
+     */
+    public boolean hasCrc() {
+        return ((header >>> 16) & 0b1) == 0;
+    }
+
+    /**
+     * @return the offset of the layer 3 main data in the frame, which is where Xing and Info tags are stored
+     */
+    public int getSideInfoEnd() {
+        int sideInfoSize;
+        if (isMpeg1()) {
+            sideInfoSize = channelCount == 1 ? 17 : 32;
+        } else {
+            sideInfoSize = channelCount == 1 ? 9 : 17;
+        }
+        return HEADER_SIZE + (hasCrc() ? 2 : 0) + sideInfoSize;
+    }
+
+    /**
+     * Reads how many bytes of main data of previous frames this frame uses from the bit reservoir.
+     *
+     * @param data   the data containing the frame
+     * @param offset the offset of the frame
+     * @return the <code>main_data_begin</code> field of the side info or 0 if this is not a layer 3 frame
+     */
+    public int getMainDataBegin(byte[] data, int offset) {
+        if (layer != 3 || getSideInfoEnd() > frameSize) {
+            return 0;
+        }
+        int pos = offset + HEADER_SIZE + (hasCrc() ? 2 : 0);
+        if (isMpeg1()) {
+            return (data[pos] & 0xFF) << 1 | (data[pos + 1] & 0xFF) >>> 7;
+        }
+        return data[pos] & 0xFF;
+    }
+
+}
@@ -0,0 +1,25 @@
+package de.maxhenkel.lame4j;
+
+import java.io.IOException;
+
+/**
+ * Receives the frames of a {@link Mp3FrameEncoder} as soon as they are complete.
+ */
+@FunctionalInterface
+public interface Mp3FrameListener {
+
+    /**
+     * Called for every complete frame.
+     * <br/>
+     * <b>NOTE</b>: The array is reused for the following frames, so the frame needs to be copied if it is used after this call returns.
+     *
+     * @param data           the array containing the frame
+     * @param offset         the offset of the frame in the array
+     * @param length         the length of the frame in bytes, including the header
+     * @param samplePosition the position of the first sample of the frame per channel, in the sample rate of the encoded audio -
+     *                       The encoder delay is subtracted, so the first frames have a negative position
+     * @throws IOException if the frame could not be processed
+     */
+    void frame(byte[] data, int offset, int length, long samplePosition) throws IOException;
+
+}
@@ -0,0 +1,280 @@
+package de.maxhenkel.lame4j;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Finds the frames of an mp3 stream by only looking at the frame headers.
+ * Frames are detected with the same rules as <code>mp3dec_decode_frame</code> in minimp3:
+ * After the first frame, a frame is accepted if its header matches the previous one and it is followed by a matching header or the end of the stream.
+ * Otherwise the scanner synchronizes again and only accepts a frame that is followed by {@value #MAX_FRAME_SYNC_MATCHES} matching frames,
+ * finding the size of free format frames from the position of the next header.
+ * <br/>
+ * minimp3 only looks at the data in the input buffer of the decoder, so the decoder can still synchronize differently
+ * if there are fewer than {@value #MAX_FRAME_SYNC_MATCHES} frames after invalid data in its buffer.
+ */
+class Mp3FrameScanner {
+
+    private static final int ID3V2_HEADER_SIZE = 10;
+    private static final int MAX_FREE_FORMAT_FRAME_SIZE = 2304;
+    private static final int MAX_FRAME_SYNC_MATCHES = 10;
+
+    private final InputStream inputStream;
+    private final byte[] buffer;
+    private int bufferStart;
+    private int bufferEnd;
+    private long bufferOffset;
+    private boolean endOfStream;
+    private boolean id3Skipped;
+    private int frameStart;
+    @Nullable
+    private Mp3FrameHeader lastHeader;
+    private int freeFormatSize;
+
+    /**
+     * @param inputStream the stream to scan - The stream is not closed by the scanner
+     */
+    public Mp3FrameScanner(InputStream inputStream) {
+        this.inputStream = inputStream;
+        // Large enough for the maximum number of matching frames with the largest possible frame size
+        buffer = new byte[32 * 1024];
+    }
+
+    /**
+     * Finds the next frame and skips over it.
+     *
+     * @return the header of the next frame or <code>null</code> if there are no more frames
+     * @throws IOException if an I/O error occurs
+     */
+    @Nullable
+    public Mp3FrameHeader next() throws IOException {
+        if (!id3Skipped) {
+            skipId3();
+            id3Skipped = true;
+        }
+        if (lastHeader != null && ensure(Mp3FrameHeader.HEADER_SIZE + 1)) {
+            Mp3FrameHeader header = Mp3FrameHeader.parse(readHeader(0), freeFormatSize);
+            if (header != null && lastHeader.isCompatible(header) && isFollowed(header)) {
+                return accept(header);
+            }
+        }
+        lastHeader = null;
+        freeFormatSize = 0;
+        Mp3FrameHeader header = findFrame();
+        if (header == null) {
+            return null;
+        }
+        return accept(header);
+    }
+
+    private Mp3FrameHeader accept(Mp3FrameHeader header) {
+        lastHeader = header;
+        frameStart = bufferStart;
+        bufferStart += header.getFrameSize();
+        return header;
+    }
+
+    /**
+     * A frame is only accepted if it is followed by a compatible frame or if it ends exactly at the end of the stream.
+     */
+    private boolean isFollowed(Mp3FrameHeader header) throws IOException {
+        int frameSize = header.getFrameSize();
+        if (!ensure(frameSize + Mp3FrameHeader.HEADER_SIZE)) {
+            return bufferEnd - bufferStart == frameSize;
+        }
+        return header.isCompatible(readHeader(frameSize));
+    }
+
+    /**
+     * Looks for the next frame like <code>mp3d_find_frame</code> in minimp3.
+     *
+     * @return the header of the frame at the current position or <code>null</code> if there are no more frames
+     */
+    @Nullable
+    private Mp3FrameHeader findFrame() throws IOException {
+        for (boolean first = true; ensure(Mp3FrameHeader.HEADER_SIZE + 1); bufferStart++, first = false) {
+            int raw = readHeader(0);
+            if (!Mp3FrameHeader.isValid(raw)) {
+                continue;
+            }
+            Mp3FrameHeader header = Mp3FrameHeader.isFreeFormat(raw) ? findFreeFormatSize(raw) : Mp3FrameHeader.parse(raw);
+            if (header == null) {
+                continue;
+            }
+            if (ensure(header.getFrameSize()) && matchFrames(header)) {
+                return header;
+            }
+            if (first && endsAt(header.getFrameSize())) {
+                return header;
+            }
+            freeFormatSize = 0;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the size of a free format frame by looking for two more frames with the same header.
+     *
+     * @param raw the header of the frame at the current position
+     * @return the parsed header or <code>null</code> if the size could not be found
+     */
+    @Nullable
+    private Mp3FrameHeader findFreeFormatSize(int raw) throws IOException {
+        for (int next = Mp3FrameHeader.HEADER_SIZE; next < MAX_FREE_FORMAT_FRAME_SIZE && ensure(2 * next + Mp3FrameHeader.HEADER_SIZE + 1); next++) {
+            int nextRaw = readHeader(next);
+            if (!Mp3FrameHeader.isCompatible(raw, nextRaw)) {
+                continue;
+            }
+            int size = next - Mp3FrameHeader.getPadding(raw);
+            int nextFrameSize = size + Mp3FrameHeader.getPadding(nextRaw);
+            if (!ensure(next + nextFrameSize + Mp3FrameHeader.HEADER_SIZE)) {
+                continue;
+            }
+            if (!Mp3FrameHeader.isCompatible(raw, readHeader(next + nextFrameSize))) {
+                continue;
+            }
+            freeFormatSize = size;
+            return Mp3FrameHeader.parse(raw, size);
+        }
+        return null;
+    }
+
+    /**
+     * Checks that the frame at the current position is followed by {@value #MAX_FRAME_SYNC_MATCHES} compatible frames,
+     * like <code>mp3d_match_frame</code> in minimp3.
+     * If the stream ends before, at least one compatible frame is required.
+     */
+    private boolean matchFrames(Mp3FrameHeader header) throws IOException {
+        int position = 0;
+        for (int matches = 0; matches < MAX_FRAME_SYNC_MATCHES; matches++) {
+            Mp3FrameHeader current = Mp3FrameHeader.parse(readHeader(position), freeFormatSize);
+            if (current == null) {
+                return false;
+            }
+            position += current.getFrameSize();
+            if (!ensure(position + Mp3FrameHeader.HEADER_SIZE)) {
+                return matches > 0;
+            }
+            if (!header.isCompatible(readHeader(position))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return if the stream ends exactly after the given number of bytes
+     */
+    private boolean endsAt(int bytes) throws IOException {
+        return ensure(bytes) && !ensure(bytes + 1);
+    }
+
+    private int readHeader(int offset) {
+        return Mp3FrameHeader.read(buffer, bufferStart + offset);
+    }
+
+    private void skipId3() throws IOException {
+        if (!ensure(ID3V2_HEADER_SIZE)) {
+            return;
+        }
+        if (buffer[bufferStart] != 'I' || buffer[bufferStart + 1] != 'D' || buffer[bufferStart + 2] != '3') {
+            return;
+        }
+        long size = (buffer[bufferStart + 6] & 0x7F) << 21 | (buffer[bufferStart + 7] & 0x7F) << 14 | (buffer[bufferStart + 8] & 0x7F) << 7 | buffer[bufferStart + 9] & 0x7F;
+        size += ID3V2_HEADER_SIZE;
+        if ((buffer[bufferStart + 5] & 0x10) != 0) {
+            // Footer present
+            size += ID3V2_HEADER_SIZE;
+        }
+        skip(size);
+    }
+
+    private void skip(long bytes) throws IOException {
+        int buffered = bufferEnd - bufferStart;
+        if (bytes <= buffered) {
+            bufferStart += (int) bytes;
+            return;
+        }
+        bytes -= buffered;
+        bufferOffset += bufferEnd;
+        bufferStart = 0;
+        bufferEnd = 0;
+        while (bytes > 0L) {
+            long skipped = inputStream.skip(bytes);
+            if (skipped <= 0L) {
+                if (inputStream.read() < 0) {
+                    endOfStream = true;
+                    return;
+                }
+                skipped = 1L;
+            }
+            bytes -= skipped;
+            bufferOffset += skipped;
+        }
+    }
+
+    /**
+     * Makes sure the given number of bytes is buffered after the current position.
+     *
+     * @param bytes the number of bytes
+     * @return <code>false</code> if the stream ended before
+     */
+    private boolean ensure(int bytes) throws IOException {
+        if (bufferEnd - bufferStart >= bytes) {
+            return true;
+        }
+        if (bufferStart > 0) {
+            System.arraycopy(buffer, bufferStart, buffer, 0, bufferEnd - bufferStart);
+            bufferOffset += bufferStart;
+            frameStart -= bufferStart;
+            bufferEnd -= bufferStart;
+            bufferStart = 0;
+        }
+        while (!endOfStream && bufferEnd < bytes) {
+            int bytesRead = inputStream.read(buffer, bufferEnd, buffer.length - bufferEnd);
+            if (bytesRead < 0) {
+                endOfStream = true;
+            } else {
+                bufferEnd += bytesRead;
+            }
+        }
+        return bufferEnd >= bytes;
+    }
+
+    /**
+     * Parses the Xing, Info or VBRI tag of the last frame returned by {@link #next()}.
+     *
+     * @param header the header of the last frame
+     * @return the tag or <code>null</code> if the frame does not contain a tag
+     */
+    @Nullable
+    public XingHeader readXingHeader(Mp3FrameHeader header) {
+        return XingHeader.parse(header, buffer, frameStart);
+    }
+
+    /**
+     * Reads the number of bytes the last frame returned by {@link #next()} uses from the bit reservoir.
+     *
+     * @param header the header of the last frame
+     * @return the <code>main_data_begin</code> field of the frame
+     */
+    public int readMainDataBegin(Mp3FrameHeader header) {
+        return header.getMainDataBegin(buffer, frameStart);
+    }
+
+    /**
+     * @return the position of the last frame returned by {@link #next()} in the stream
+     */
+    public long getFrameOffset() {
+        return bufferOffset + frameStart;
+    }
+
+    /**
+     * @return the position in the stream after the last frame returned by {@link #next()}
+     */
+    public long getPosition() {
+        return bufferOffset + bufferStart;
+    }
+
+}
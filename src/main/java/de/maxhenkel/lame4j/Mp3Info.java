@@ -0,0 +1,187 @@
+package de.maxhenkel.lame4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Information about an mp3 file that is obtained by only reading the frame headers without decoding any audio.
+ */
+public class Mp3Info implements Audio {
+
+    private final int channelCount;
+    private final int sampleRate;
+    private final int bitRate;
+    private final long frameCount;
+    private final int samplesPerFrame;
+    private final boolean vbr;
+    private final int encoderDelay;
+    private final int encoderPadding;
+
+    public Mp3Info(int channelCount, int sampleRate, int bitRate, long frameCount, int samplesPerFrame, boolean vbr, int encoderDelay, int encoderPadding) {
+        this.channelCount = channelCount;
+        this.sampleRate = sampleRate;
+        this.bitRate = bitRate;
+        this.frameCount = frameCount;
+        this.samplesPerFrame = samplesPerFrame;
+        this.vbr = vbr;
+        this.encoderDelay = encoderDelay;
+        this.encoderPadding = encoderPadding;
+    }
+
+    @Override
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return the average bit rate of the mp3 file in kbps
+     */
+    @Override
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    /**
+     * @return the number of audio frames, not including the frame of a Xing, Info or VBRI tag
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return the number of samples per channel in a single frame
+     */
+    public int getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    /**
+     * @return if the bit rate of the mp3 file is variable
+     */
+    public boolean isVbr() {
+        return vbr;
+    }
+
+    /**
+     * @return the number of samples per channel the encoder added to the start or -1 if unknown
+     */
+    public int getEncoderDelay() {
+        return encoderDelay;
+    }
+
+    /**
+     * @return the number of samples per channel the encoder added to the end or -1 if unknown
+     */
+    public int getEncoderPadding() {
+        return encoderPadding;
+    }
+
+    /**
+     * @return the number of samples per channel, excluding the encoder delay and padding if known
+     */
+    public long getSampleCount() {
+        long samples = frameCount * samplesPerFrame;
+        if (encoderDelay > 0) {
+            samples -= encoderDelay;
+        }
+        if (encoderPadding > 0) {
+            samples -= encoderPadding;
+        }
+        return Math.max(samples, 0L);
+    }
+
+    /**
+     * @return the duration of the mp3 file in seconds
+     */
+    public double getDuration() {
+        return (double) getSampleCount() / (double) sampleRate;
+    }
+
+    /**
+     * Reads the information of the given mp3 file.
+     * The file is memory mapped, so only the pages containing frame headers are read.
+     * If the file has a Xing, Info or VBRI tag with the number of frames, only the first frame is read.
+     *
+     * @param path the path of the mp3 file
+     * @return the information of the mp3 file
+     * @throws IOException if an I/O error occurs or the mp3 file is invalid
+     */
+    public static Mp3Info probe(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return probe(Channels.newInputStream(channel));
+            }
+            return probe(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0L, size)));
+        }
+    }
+
+    /**
+     * Reads the information of the given mp3 stream.
+     * If the stream has a Xing, Info or VBRI tag with the number of frames, only the first frame is read.
+     * The input stream is not closed.
+     *
+     * @param inputStream the input stream of the mp3 file
+     * @return the information of the mp3 file
+     * @throws IOException if an I/O error occurs or the mp3 file is invalid
+     */
+    public static Mp3Info probe(InputStream inputStream) throws IOException {
+        Mp3FrameScanner scanner = new Mp3FrameScanner(inputStream);
+        Mp3FrameHeader first = scanner.next();
+        if (first == null) {
+            throw new IOException("No header found");
+        }
+        XingHeader xing = scanner.readXingHeader(first);
+
+        int encoderDelay = xing == null ? -1 : xing.getEncoderDelay();
+        int encoderPadding = xing == null ? -1 : xing.getEncoderPadding();
+
+        if (xing != null && xing.getFrameCount() > 0L) {
+            long frameCount = xing.getFrameCount();
+            int bitRate;
+            if (xing.isVbr() && xing.getByteCount() > 0L) {
+                bitRate = averageBitRate(xing.getByteCount(), frameCount, first);
+            } else {
+                bitRate = first.getBitRate();
+            }
+            return new Mp3Info(first.getChannelCount(), first.getSampleRate(), bitRate, frameCount, first.getSamplesPerFrame(), xing.isVbr(), encoderDelay, encoderPadding);
+        }
+
+        Mp3FrameHeader header = first;
+        if (xing != null) {
+            header = scanner.next();
+        }
+        if (header == null) {
+            throw new IOException("No audio data found");
+        }
+        int firstBitRate = header.getBitRate();
+        long frameCount = 0L;
+        long byteCount = 0L;
+        boolean vbr = false;
+        for (; header != null; header = scanner.next()) {
+            frameCount++;
+            byteCount += header.getFrameSize();
+            if (header.getBitRate() != firstBitRate) {
+                vbr = true;
+            }
+        }
+
+        int bitRate = vbr ? averageBitRate(byteCount, frameCount, first) : firstBitRate;
+        return new Mp3Info(first.getChannelCount(), first.getSampleRate(), bitRate, frameCount, first.getSamplesPerFrame(), vbr, encoderDelay, encoderPadding);
+    }
+
+    static int averageBitRate(long byteCount, long frameCount, Mp3FrameHeader header) {
+        double seconds = (double) (frameCount * header.getSamplesPerFrame()) / (double) header.getSampleRate();
+        return (int) Math.round(byteCount * 8D / seconds / 1000D);
+    }
+
+}
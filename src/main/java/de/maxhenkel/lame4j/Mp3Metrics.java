@@ -0,0 +1,108 @@
+package de.maxhenkel.lame4j;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global instrumentation of all encoders and decoders.
+ */
+public final class Mp3Metrics {
+
+    @Nullable
+    private static volatile Mp3MetricsListener listener;
+    private static final AtomicInteger LIVE_ENCODERS = new AtomicInteger();
+    private static final AtomicInteger LIVE_DECODERS = new AtomicInteger();
+    private static final AtomicLong LEAKS = new AtomicLong();
+    private static volatile boolean leakTracking = Boolean.getBoolean("lame4j.leakTracking");
+
+    private Mp3Metrics() {
+
+    }
+
+    /**
+     * Sets the listener that new encoders and decoders report to.
+     * Encoders and decoders that already exist keep their listener.
+     *
+     * @param listener the listener or <code>null</code> to disable metrics
+     */
+    public static void setListener(@Nullable Mp3MetricsListener listener) {
+        Mp3Metrics.listener = listener;
+    }
+
+    /**
+     * @return the listener that new encoders and decoders report to or <code>null</code> if metrics are disabled
+     */
+    @Nullable
+    public static Mp3MetricsListener getListener() {
+        return listener;
+    }
+
+    /**
+     * The number of native LAME contexts that are currently allocated, including idle contexts in pools.
+     * If this keeps growing, encoders are not closed.
+     *
+     * @return the number of native encoder contexts
+     */
+    public static int getLiveEncoderCount() {
+        return LIVE_ENCODERS.get();
+    }
+
+    /**
+     * The number of native minimp3 contexts that are currently allocated, including idle contexts in pools.
+     * If this keeps growing, decoders are not closed.
+     *
+     * @return the number of native decoder contexts
+     */
+    public static int getLiveDecoderCount() {
+        return LIVE_DECODERS.get();
+    }
+
+    /**
+     * Enables recording the stack trace of every encoder and decoder creation.
+     * If an encoder or decoder is garbage collected without being closed, the stack trace is logged and passed to {@link Mp3MetricsListener#leaked(String, Throwable)}.
+     * This can also be enabled with the system property <code>lame4j.leakTracking</code>.
+     * <br/>
+     * <b>NOTE</b>: Recording the stack traces makes creating encoders and decoders considerably slower.
+     *
+     * @param leakTracking if the creation stack traces should be recorded
+     */
+    public static void setLeakTracking(boolean leakTracking) {
+        Mp3Metrics.leakTracking = leakTracking;
+    }
+
+    public static boolean isLeakTracking() {
+        return leakTracking;
+    }
+
+    /**
+     * The number of encoders and decoders that were garbage collected without being closed.
+     * Their native contexts are destroyed when they are collected, but closing them frees the native memory much sooner.
+     *
+     * @return the number of leaked encoders and decoders
+     */
+    public static long getLeakCount() {
+        return LEAKS.get();
+    }
+
+    static void leaked() {
+        LEAKS.incrementAndGet();
+    }
+
+    static void encoderCreated() {
+        LIVE_ENCODERS.incrementAndGet();
+    }
+
+    static void encoderDestroyed() {
+        LIVE_ENCODERS.decrementAndGet();
+    }
+
+    static void decoderCreated() {
+        LIVE_DECODERS.incrementAndGet();
+    }
+
+    static void decoderDestroyed() {
+        LIVE_DECODERS.decrementAndGet();
+    }
+
+}
@@ -0,0 +1,79 @@
+package de.maxhenkel.lame4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * Receives measurements from encoders and decoders.
+ * All methods are called on the thread that uses the encoder or decoder, so implementations need to be thread safe and fast.
+ * <br/>
+ * Listeners are only called if they are set with {@link Mp3Metrics#setListener(Mp3MetricsListener)} or on a single encoder or decoder.
+ * Without a listener, encoders and decoders don't take any timestamps.
+ *
+ * @see Mp3Statistics
+ */
+public interface Mp3MetricsListener {
+
+    /**
+     * Called after a native decode call that decoded at least one frame.
+     *
+     * @param frames  the number of frames decoded
+     * @param samples the number of samples decoded
+     * @param bytes   the number of mp3 bytes consumed
+     * @param nanos   the time spent in the native call
+     */
+    default void decoded(int frames, int samples, int bytes, long nanos) {
+
+    }
+
+    /**
+     * Called if the decoder consumed data without decoding any samples, for example when skipping tags or resyncing after invalid data.
+     *
+     * @param bytes the number of bytes skipped
+     */
+    default void skipped(int bytes) {
+
+    }
+
+    /**
+     * Called after reading mp3 data from an input stream or channel.
+     *
+     * @param bytes the number of bytes read or -1 if the end of the stream is reached
+     * @param nanos the time spent reading
+     */
+    default void inputRead(int bytes, long nanos) {
+
+    }
+
+    /**
+     * Called after a native encode or flush call.
+     *
+     * @param samples the number of samples passed to the encoder
+     * @param bytes   the number of mp3 bytes produced
+     * @param nanos   the time spent in the native call
+     */
+    default void encoded(int samples, int bytes, long nanos) {
+
+    }
+
+    /**
+     * Called after writing mp3 data to the output stream of an encoder.
+     *
+     * @param bytes the number of bytes written
+     * @param nanos the time spent writing
+     */
+    default void outputWritten(int bytes, long nanos) {
+
+    }
+
+    /**
+     * Called on the cleaner thread after the native context of an encoder or decoder that was never closed is destroyed.
+     * This is only reported to the global listener.
+     *
+     * @param type           the class name of the leaked encoder or decoder
+     * @param allocationSite the stack trace of the creation or <code>null</code> if {@link Mp3Metrics#setLeakTracking(boolean)} was disabled
+     */
+    default void leaked(String type, @Nullable Throwable allocationSite) {
+
+    }
+
+}
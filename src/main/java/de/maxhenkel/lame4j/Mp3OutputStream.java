@@ -0,0 +1,155 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that accepts signed 16 bit little endian PCM data and encodes it to mp3.
+ * The PCM data is collected in a fixed size buffer that is passed to the encoder whenever it is full,
+ * so the memory usage doesn't depend on the length of the audio.
+ */
+public class Mp3OutputStream extends OutputStream {
+
+    /**
+     * The number of samples that are collected before they are passed to the encoder.
+     */
+    private static final int BUFFER_SAMPLES = 8192;
+
+    private final Mp3Encoder encoder;
+    private final int channels;
+    private final short[] samples;
+    private int sampleCount;
+    private int lowByte;
+    private boolean hasLowByte;
+    private boolean closed;
+
+    /**
+     * @param encoder the encoder to pass the samples to - The encoder is closed when this stream is closed
+     */
+    public Mp3OutputStream(Mp3Encoder encoder) {
+        this.encoder = encoder;
+        this.channels = encoder.getConfig().getChannels();
+        samples = new short[BUFFER_SAMPLES * channels];
+    }
+
+    /**
+     * Creates an encoder for PCM data of the given format.
+     *
+     * @param format       the format of the PCM data - Needs to be signed 16 bit little endian PCM with one or two channels
+     * @param bitRate      the bit rate of the encoded audio data
+     * @param quality      the quality of the encoded audio data - Valid values are 0 (highest) to 9 (lowest)
+     * @param outputStream the output stream to write the mp3 data to - The stream is closed when this stream is closed
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public Mp3OutputStream(AudioFormat format, int bitRate, int quality, OutputStream outputStream) throws IOException, UnknownPlatformException {
+        this(new Mp3Encoder(format.getChannels(), (int) checkFormat(format).getSampleRate(), bitRate, quality, outputStream));
+    }
+
+    private static AudioFormat checkFormat(AudioFormat format) {
+        if (!AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding()) || format.getSampleSizeInBits() != 16 || format.isBigEndian()) {
+            throw new IllegalArgumentException("Audio format must be signed 16 bit little endian PCM");
+        }
+        return format;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkClosed();
+        if (!hasLowByte) {
+            lowByte = b & 0xFF;
+            hasLowByte = true;
+            return;
+        }
+        hasLowByte = false;
+        addSample((short) (lowByte | (b & 0xFF) << 8));
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        checkClosed();
+        int end = off + len;
+        if (hasLowByte && off < end) {
+            write(b[off++]);
+        }
+        while (end - off >= 2) {
+            int count = Math.min((end - off) / 2, samples.length - sampleCount);
+            for (int i = 0; i < count; i++) {
+                samples[sampleCount++] = (short) (b[off] & 0xFF | b[off + 1] << 8);
+                off += 2;
+            }
+            if (sampleCount >= samples.length) {
+                encode();
+            }
+        }
+        if (off < end) {
+            write(b[off]);
+        }
+    }
+
+    private void addSample(short sample) throws IOException {
+        samples[sampleCount++] = sample;
+        if (sampleCount >= samples.length) {
+            encode();
+        }
+    }
+
+    /**
+     * Passes all complete samples of all channels to the encoder.
+     * The samples of an incomplete last sample frame are kept in the buffer.
+     */
+    private void encode() throws IOException {
+        int length = sampleCount - sampleCount % channels;
+        if (length <= 0) {
+            return;
+        }
+        encoder.write(samples, 0, length);
+        System.arraycopy(samples, length, samples, 0, sampleCount - length);
+        sampleCount -= length;
+    }
+
+    /**
+     * Passes the buffered samples to the encoder.
+     * This doesn't flush the encoder itself, as that would end the mp3 stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        checkClosed();
+        encode();
+    }
+
+    /**
+     * Encodes the buffered samples and closes the encoder.
+     * <br/>
+     * <b>NOTE</b>: Bytes that don't make up a complete sample of all channels are discarded.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            encode();
+        } finally {
+            encoder.close();
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import javax.annotation.Nullable;
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A decoder that is fed with mp3 data instead of reading it from a stream.
+ * It never performs any I/O, so a single thread can drive many decoders, for example from a selector or the completion handlers of an {@link java.nio.channels.AsynchronousSocketChannel}.
+ * <br/>
+ * The fed data is kept in a native buffer until it is decoded.
+ * Incomplete frames at the end of the buffer are kept for the next call, only these few bytes are moved when the buffer runs out of space.
+ * To make sure that minimp3 never sees a partial frame, the last few kilobytes are only decoded once more data is fed or {@link #finish()} is called.
+ * This class is not thread safe.
+ */
+public class Mp3PushDecoder implements Audio, AutoCloseable {
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final short[] EMPTY = new short[0];
+
+    private final Mp3Decoder decoder;
+    /**
+     * The unconsumed mp3 data is between the position and the limit.
+     */
+    private ByteBuffer buffer;
+    @Nullable
+    private short[] outBuffer;
+    private boolean finished;
+
+    /**
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public Mp3PushDecoder() throws IOException, UnknownPlatformException {
+        this(null);
+    }
+
+    /**
+     * @param pool the pool to acquire the native context from or <code>null</code> to create a new context
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public Mp3PushDecoder(@Nullable Mp3DecoderPool pool) throws IOException, UnknownPlatformException {
+        // The decoder only provides the native context, it never reads from its own input
+        ByteBuffer empty = ByteBuffer.allocateDirect(0);
+        decoder = pool == null ? new Mp3Decoder(empty) : pool.acquire(empty);
+        buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        buffer.limit(0);
+    }
+
+    /**
+     * Appends the remaining bytes of the given buffer to the data that is waiting to be decoded.
+     * The position of the given buffer is advanced to its limit.
+     *
+     * @param data the mp3 data
+     */
+    public void append(ByteBuffer data) {
+        if (finished) {
+            throw new IllegalStateException("Decoder is already finished");
+        }
+        int length = data.remaining();
+        if (buffer.capacity() - buffer.limit() < length) {
+            makeSpace(length);
+        }
+        int end = buffer.limit();
+        buffer.limit(end + length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(end);
+        target.put(data);
+    }
+
+    /**
+     * Moves the unconsumed data to the start of the buffer and grows the buffer if it still doesn't have enough space.
+     *
+     * @param length the number of bytes that need to fit after the unconsumed data
+     */
+    private void makeSpace(int length) {
+        int remaining = buffer.remaining();
+        if (buffer.capacity() - remaining >= length) {
+            buffer.compact();
+            buffer.flip();
+            return;
+        }
+        int capacity = buffer.capacity();
+        while (capacity - remaining < length) {
+            if (capacity > Integer.MAX_VALUE / 2) {
+                capacity = Integer.MAX_VALUE;
+                break;
+            }
+            capacity *= 2;
+        }
+        if (capacity - remaining < length) {
+            throw new IllegalStateException("Too much unconsumed mp3 data");
+        }
+        ByteBuffer newBuffer = ByteBuffer.allocateDirect(capacity);
+        newBuffer.put(buffer);
+        newBuffer.flip();
+        buffer = newBuffer;
+    }
+
+    /**
+     * Appends the given mp3 data and decodes all complete frames.
+     *
+     * @param data the mp3 data - The position is advanced to its limit
+     * @return the samples decoded from the data fed so far, which might be empty
+     * @throws IOException if an I/O error occurs
+     */
+    public short[] feed(ByteBuffer data) throws IOException {
+        append(data);
+        return decodeAvailable();
+    }
+
+    /**
+     * Decodes all frames that are available.
+     *
+     * @return the decoded samples, which might be empty
+     * @throws IOException if an I/O error occurs
+     */
+    private short[] decodeAvailable() throws IOException {
+        if (outBuffer == null) {
+            outBuffer = new short[decoder.getMaxSamplesPerFrame() * 8];
+        }
+        short[] samples = EMPTY;
+        int samplesDecoded;
+        while ((samplesDecoded = decodeFrames(outBuffer, 0, outBuffer.length)) > 0) {
+            int length = samples.length;
+            samples = Arrays.copyOf(samples, length + samplesDecoded);
+            System.arraycopy(outBuffer, 0, samples, length, samplesDecoded);
+        }
+        return samples;
+    }
+
+    /**
+     * Decodes as many of the available frames as fit into the given array.
+     * Unlike {@link #feed(ByteBuffer)}, this doesn't allocate any memory - Use it together with {@link #append(ByteBuffer)}.
+     * <br/>
+     * <b>NOTE</b>: The maximum number of samples needs to be at least {@link #getMaxSamplesPerFrame()}.
+     *
+     * @param dst        the array to write the decoded samples to
+     * @param offset     the offset in the array to start writing at
+     * @param maxSamples the maximum number of samples to write
+     * @return the number of samples written, 0 if more data is needed or -1 if the decoder is finished and all data is decoded
+     * @throws IOException if an I/O error occurs
+     */
+    public int decodeFrames(short[] dst, int offset, int maxSamples) throws IOException {
+        if (offset < 0 || maxSamples < getMaxSamplesPerFrame() || offset > dst.length - maxSamples) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                return finished ? -1 : 0;
+            }
+            int reserve = finished ? 0 : Mp3Decoder.MIN_BUFFERED_BYTES;
+            if (buffer.remaining() <= reserve) {
+                return 0;
+            }
+            int position = buffer.position();
+            int samplesDecoded = decoder.decodeFrames(buffer, reserve, dst, offset, maxSamples);
+            if (samplesDecoded > 0) {
+                return samplesDecoded;
+            }
+            if (buffer.position() == position) {
+                // The decoder needs more data
+                return finished ? -1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Marks the end of the mp3 data, so that the remaining buffered data is decoded.
+     *
+     * @return the remaining decoded samples, which might be empty
+     * @throws IOException if an I/O error occurs
+     */
+    public short[] finish() throws IOException {
+        finished = true;
+        return decodeAvailable();
+    }
+
+    /**
+     * @return the number of fed bytes that are not decoded yet
+     */
+    public int getBufferedBytes() {
+        return buffer.remaining();
+    }
+
+    /**
+     * See {@link Mp3Decoder#setDownmix(boolean)}.
+     *
+     * @param downmix if stereo audio should be mixed down to mono
+     */
+    public void setDownmix(boolean downmix) {
+        decoder.setDownmix(downmix);
+    }
+
+    /**
+     * See {@link Mp3Decoder#setMetricsListener(Mp3MetricsListener)}.
+     *
+     * @param listener the listener or <code>null</code> to disable metrics for this decoder
+     */
+    public void setMetricsListener(@Nullable Mp3MetricsListener listener) {
+        decoder.setMetricsListener(listener);
+    }
+
+    public int getMaxSamplesPerFrame() {
+        return decoder.getMaxSamplesPerFrame();
+    }
+
+    /**
+     * @return if the header of the mp3 data is parsed
+     */
+    public boolean headerParsed() {
+        return decoder.headerParsed();
+    }
+
+    /**
+     * @return the number of channels of the decoded audio or -1 if the header of the mp3 data is not yet parsed
+     */
+    @Override
+    public int getChannelCount() {
+        return decoder.getChannelCount();
+    }
+
+    /**
+     * @return the sample rate of the decoded audio or -1 if the header of the mp3 data is not yet parsed
+     */
+    @Override
+    public int getSampleRate() {
+        return decoder.getSampleRate();
+    }
+
+    /**
+     * @return the bitrate of the mp3 data or -1 if the header of the mp3 data is not yet parsed
+     */
+    @Override
+    public int getBitRate() {
+        return decoder.getBitRate();
+    }
+
+    /**
+     * @return the audio format of the decoded audio or null if the header of the mp3 data is not yet parsed
+     */
+    @Override
+    @Nullable
+    public AudioFormat createAudioFormat() {
+        return decoder.createAudioFormat();
+    }
+
+    /**
+     * Closes the decoder.
+     * If the decoder was created with a {@link Mp3DecoderPool}, the native context is returned to the pool.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        decoder.close();
+    }
+
+    public boolean isClosed() {
+        return decoder.isClosed();
+    }
+
+}
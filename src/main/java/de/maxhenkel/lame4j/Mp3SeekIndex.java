@@ -0,0 +1,145 @@
+package de.maxhenkel.lame4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * The positions of all frames in an mp3 file.
+ */
+class Mp3SeekIndex {
+
+    /**
+     * The number of frames that need to be decoded correctly before a frame to restore the state of the synthesis filter bank.
+     * The IMDCT overlap and the polyphase filter bank only depend on the last frame for MPEG 1 layer 2 and 3,
+     * but frames with a single granule and layer 1 frames are shorter than the filter bank, so they depend on the frame before them as well.
+     */
+    private static final int FILTER_BANK_FRAMES = 2;
+
+    private final long[] frameOffsets;
+    private final short[] mainDataBegins;
+    private final int frameCount;
+    private final long endOffset;
+    private final int samplesPerFrame;
+    private final int channelCount;
+    private final int sampleRate;
+    private final int sideInfoEnd;
+
+    private Mp3SeekIndex(long[] frameOffsets, short[] mainDataBegins, int frameCount, long endOffset, Mp3FrameHeader header) {
+        this.frameOffsets = frameOffsets;
+        this.mainDataBegins = mainDataBegins;
+        this.frameCount = frameCount;
+        this.endOffset = endOffset;
+        samplesPerFrame = header.getSamplesPerFrame();
+        channelCount = header.getChannelCount();
+        sampleRate = header.getSampleRate();
+        sideInfoEnd = header.getSideInfoEnd();
+    }
+
+    /**
+     * Scans the given stream for frames.
+     *
+     * @param inputStream the stream to scan - The stream is not closed
+     * @return the index
+     * @throws IOException if an I/O error occurs or the stream doesn't contain any frames
+     */
+    public static Mp3SeekIndex build(InputStream inputStream) throws IOException {
+        Mp3FrameScanner scanner = new Mp3FrameScanner(inputStream);
+        Mp3FrameHeader first = scanner.next();
+        if (first == null) {
+            throw new IOException("No header found");
+        }
+        long[] offsets = new long[1024];
+        short[] mainDataBegins = new short[offsets.length];
+        int count = 0;
+        for (Mp3FrameHeader header = first; header != null; header = scanner.next()) {
+            if (count >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                mainDataBegins = Arrays.copyOf(mainDataBegins, offsets.length);
+            }
+            offsets[count] = scanner.getFrameOffset();
+            mainDataBegins[count] = (short) scanner.readMainDataBegin(header);
+            count++;
+        }
+        return new Mp3SeekIndex(offsets, mainDataBegins, count, scanner.getPosition(), first);
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @param frame the index of the frame
+     * @return the position of the frame in the file
+     */
+    public long getFrameOffset(int frame) {
+        if (frame >= frameCount) {
+            return endOffset;
+        }
+        return frameOffsets[frame];
+    }
+
+    /**
+     * @return the position after the last frame in the file
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * @return the number of samples per channel in a single frame
+     */
+    public int getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * @return the number of samples per channel of all frames
+     */
+    public long getSampleCount() {
+        return (long) frameCount * samplesPerFrame;
+    }
+
+    /**
+     * @return the bit rate in kbit/s calculated from the size and duration of all frames
+     */
+    public int getAverageBitRate() {
+        double seconds = (double) getSampleCount() / (double) sampleRate;
+        return (int) Math.round((endOffset - frameOffsets[0]) * 8D / seconds / 1000D);
+    }
+
+    /**
+     * @param sample the sample per channel
+     * @return the index of the frame containing the sample or the frame count if the sample is after the last frame
+     */
+    public int getFrameForSample(long sample) {
+        return (int) Math.min(sample / samplesPerFrame, frameCount);
+    }
+
+    /**
+     * Gets the first frame that needs to be decoded, so that the given frame decodes to the same samples as when decoding the whole file.
+     * <br/>
+     * The frames that restore the synthesis filter bank need to be decoded correctly, which requires the bit reservoir of the first of them.
+     * minimp3 skips frames whose reservoir is not available, but keeps the main data of every frame,
+     * so decoding starts early enough for the frames before to contain the <code>main_data_begin</code> bytes of that frame.
+     * All following frames then find their reservoir as well.
+     *
+     * @param frame the index of the frame
+     * @return the index of the first frame to decode
+     */
+    public int getPrimingFrame(int frame) {
+        int first = Math.max(0, Math.min(frame, frameCount) - FILTER_BANK_FRAMES);
+        int start = first;
+        long reservoir = 0L;
+        while (start > 0 && reservoir < mainDataBegins[first]) {
+            start--;
+            reservoir += getFrameOffset(start + 1) - getFrameOffset(start) - sideInfoEnd;
+        }
+        return start;
+    }
+
+}
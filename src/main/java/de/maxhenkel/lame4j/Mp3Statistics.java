@@ -0,0 +1,249 @@
+package de.maxhenkel.lame4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects counters and histograms from the encoders and decoders it is set as listener on.
+ * Set it with {@link Mp3Metrics#setListener(Mp3MetricsListener)} for global statistics or on a single encoder or decoder for statistics of that instance.
+ * <br/>
+ * Statistics can be exported with {@link #register(String)}, which also exposes the number of live native contexts and leaked encoders and decoders.
+ */
+public class Mp3Statistics implements Mp3MetricsListener, Mp3StatisticsMBean {
+
+    private final LongAdder framesDecoded = new LongAdder();
+    private final LongAdder samplesDecoded = new LongAdder();
+    private final LongAdder bytesConsumed = new LongAdder();
+    private final LongAdder bytesSkipped = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final Histogram decodeTime = new Histogram();
+    private final LongAdder inputBytes = new LongAdder();
+    private final LongAdder inputNanos = new LongAdder();
+    private final Histogram inputTime = new Histogram();
+    private final LongAdder samplesEncoded = new LongAdder();
+    private final LongAdder bytesEncoded = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final Histogram encodeTime = new Histogram();
+    private final LongAdder outputBytes = new LongAdder();
+    private final LongAdder outputNanos = new LongAdder();
+    private final LongAdder writeCount = new LongAdder();
+    private final Histogram outputTime = new Histogram();
+    private final Histogram writeSize = new Histogram();
+
+    @Override
+    public void decoded(int frames, int samples, int bytes, long nanos) {
+        framesDecoded.add(frames);
+        samplesDecoded.add(samples);
+        bytesConsumed.add(bytes);
+        decodeNanos.add(nanos);
+        decodeTime.record(nanos);
+    }
+
+    @Override
+    public void skipped(int bytes) {
+        bytesConsumed.add(bytes);
+        bytesSkipped.add(bytes);
+    }
+
+    @Override
+    public void inputRead(int bytes, long nanos) {
+        if (bytes > 0) {
+            inputBytes.add(bytes);
+        }
+        inputNanos.add(nanos);
+        inputTime.record(nanos);
+    }
+
+    @Override
+    public void encoded(int samples, int bytes, long nanos) {
+        samplesEncoded.add(samples);
+        bytesEncoded.add(bytes);
+        encodeNanos.add(nanos);
+        encodeTime.record(nanos);
+    }
+
+    @Override
+    public void outputWritten(int bytes, long nanos) {
+        outputBytes.add(bytes);
+        outputNanos.add(nanos);
+        writeCount.increment();
+        outputTime.record(nanos);
+        writeSize.record(bytes);
+    }
+
+    @Override
+    public long getFramesDecoded() {
+        return framesDecoded.sum();
+    }
+
+    @Override
+    public long getSamplesDecoded() {
+        return samplesDecoded.sum();
+    }
+
+    @Override
+    public long getBytesConsumed() {
+        return bytesConsumed.sum();
+    }
+
+    @Override
+    public long getBytesSkipped() {
+        return bytesSkipped.sum();
+    }
+
+    @Override
+    public long getDecodeNanos() {
+        return decodeNanos.sum();
+    }
+
+    @Override
+    public long[] getDecodeTimeHistogram() {
+        return decodeTime.getCounts();
+    }
+
+    @Override
+    public long getDecodeTimeP99Nanos() {
+        return decodeTime.getPercentile(99D);
+    }
+
+    @Override
+    public long getInputBytes() {
+        return inputBytes.sum();
+    }
+
+    @Override
+    public long getInputNanos() {
+        return inputNanos.sum();
+    }
+
+    @Override
+    public long[] getInputTimeHistogram() {
+        return inputTime.getCounts();
+    }
+
+    @Override
+    public long getSamplesEncoded() {
+        return samplesEncoded.sum();
+    }
+
+    @Override
+    public long getBytesEncoded() {
+        return bytesEncoded.sum();
+    }
+
+    @Override
+    public long getEncodeNanos() {
+        return encodeNanos.sum();
+    }
+
+    @Override
+    public long[] getEncodeTimeHistogram() {
+        return encodeTime.getCounts();
+    }
+
+    @Override
+    public long getEncodeTimeP99Nanos() {
+        return encodeTime.getPercentile(99D);
+    }
+
+    @Override
+    public long getOutputBytes() {
+        return outputBytes.sum();
+    }
+
+    @Override
+    public long getOutputNanos() {
+        return outputNanos.sum();
+    }
+
+    @Override
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    @Override
+    public long[] getOutputTimeHistogram() {
+        return outputTime.getCounts();
+    }
+
+    @Override
+    public long[] getWriteSizeHistogram() {
+        return writeSize.getCounts();
+    }
+
+    @Override
+    public int getLiveEncoderCount() {
+        return Mp3Metrics.getLiveEncoderCount();
+    }
+
+    @Override
+    public int getLiveDecoderCount() {
+        return Mp3Metrics.getLiveDecoderCount();
+    }
+
+    @Override
+    public long getLeakCount() {
+        return Mp3Metrics.getLeakCount();
+    }
+
+    /**
+     * Resets all counters and histograms.
+     * Values that are recorded concurrently might be partially lost.
+     */
+    @Override
+    public void reset() {
+        framesDecoded.reset();
+        samplesDecoded.reset();
+        bytesConsumed.reset();
+        bytesSkipped.reset();
+        decodeNanos.reset();
+        decodeTime.reset();
+        inputBytes.reset();
+        inputNanos.reset();
+        inputTime.reset();
+        samplesEncoded.reset();
+        bytesEncoded.reset();
+        encodeNanos.reset();
+        encodeTime.reset();
+        outputBytes.reset();
+        outputNanos.reset();
+        writeCount.reset();
+        outputTime.reset();
+        writeSize.reset();
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server.
+     *
+     * @param name the name that distinguishes these statistics from other registered statistics
+     * @return the name of the MBean
+     * @throws JMException if the MBean could not be registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = getObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Removes statistics from the platform MBean server.
+     *
+     * @param name the name the statistics were registered with
+     * @throws JMException if the MBean could not be unregistered
+     */
+    public static void unregister(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = getObjectName(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    private static ObjectName getObjectName(String name) throws JMException {
+        return new ObjectName("de.maxhenkel.lame4j:type=Mp3Statistics,name=" + ObjectName.quote(name));
+    }
+
+}
@@ -0,0 +1,57 @@
+package de.maxhenkel.lame4j;
+
+/**
+ * The JMX interface of {@link Mp3Statistics}.
+ * Histograms have power of two buckets - Bucket 0 counts the value 0 and bucket n counts the values from 2^(n-1) to 2^n - 1.
+ */
+public interface Mp3StatisticsMBean {
+
+    long getFramesDecoded();
+
+    long getSamplesDecoded();
+
+    long getBytesConsumed();
+
+    long getBytesSkipped();
+
+    long getDecodeNanos();
+
+    long[] getDecodeTimeHistogram();
+
+    long getDecodeTimeP99Nanos();
+
+    long getInputBytes();
+
+    long getInputNanos();
+
+    long[] getInputTimeHistogram();
+
+    long getSamplesEncoded();
+
+    long getBytesEncoded();
+
+    long getEncodeNanos();
+
+    long[] getEncodeTimeHistogram();
+
+    long getEncodeTimeP99Nanos();
+
+    long getOutputBytes();
+
+    long getOutputNanos();
+
+    long getWriteCount();
+
+    long[] getOutputTimeHistogram();
+
+    long[] getWriteSizeHistogram();
+
+    int getLiveEncoderCount();
+
+    int getLiveDecoderCount();
+
+    long getLeakCount();
+
+    void reset();
+
+}
@@ -0,0 +1,389 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-encodes mp3 data by streaming the decoded samples directly into an encoder.
+ * Only a fixed number of sample buffers are used, so the memory usage doesn't depend on the length of the audio.
+ * <br/>
+ * If pipelining is enabled, decoding runs on a separate thread and passes the buffers to the encoding thread through a lock-free queue.
+ */
+public class Mp3Transcoder {
+
+    /**
+     * Encodes with the average bit rate of the source, rounded to the closest bit rate that is allowed for constant bit rate encoding.
+     */
+    public static final int SOURCE_BIT_RATE = 0;
+
+    /**
+     * The number of sample buffers that are passed between the decoding and the encoding thread.
+     */
+    private static final int BUFFER_COUNT = 8;
+
+    /**
+     * The number of frames that are decoded into a single buffer.
+     */
+    private static final int FRAMES_PER_BUFFER = 16;
+
+    /**
+     * The number of times a thread checks the queue again without pausing.
+     * Spinning is pointless on a single core, as the other thread can't make progress while this thread spins.
+     */
+    private static final int SPIN_COUNT = Runtime.getRuntime().availableProcessors() > 1 ? 100 : 0;
+
+    /**
+     * The number of times a thread yields before parking.
+     */
+    private static final int YIELD_COUNT = 100;
+
+    private static final long PARK_NANOS = 50_000L;
+
+    private final int bitRate;
+    private final int quality;
+    private final int outSampleRate;
+    private final Mp3EncoderConfig.ChannelMode channelMode;
+    private final boolean pipelined;
+
+    /**
+     * @param bitRate   the bit rate of the encoded audio data or {@link #SOURCE_BIT_RATE}
+     * @param quality   the quality of the encoded audio data - Valid values are 0 (highest) to 9 (lowest)
+     * @param pipelined if decoding should run on a separate thread
+     */
+    public Mp3Transcoder(int bitRate, int quality, boolean pipelined) {
+        this(bitRate, quality, Mp3EncoderConfig.SAMPLE_RATE_AUTO, Mp3EncoderConfig.ChannelMode.AUTO, pipelined);
+    }
+
+    /**
+     * @param bitRate       the bit rate of the encoded audio data or {@link #SOURCE_BIT_RATE}
+     * @param quality       the quality of the encoded audio data - Valid values are 0 (highest) to 9 (lowest)
+     * @param outSampleRate the sample rate of the encoded audio data or {@link Mp3EncoderConfig#SAMPLE_RATE_AUTO} - LAME resamples the audio while encoding, sources with a lower sample rate are not upsampled
+     * @param channelMode   the channel mode of the encoded audio data - Stereo sources are mixed down to mono by the decoder when using {@link Mp3EncoderConfig.ChannelMode#MONO}
+     * @param pipelined     if decoding should run on a separate thread
+     */
+    public Mp3Transcoder(int bitRate, int quality, int outSampleRate, Mp3EncoderConfig.ChannelMode channelMode, boolean pipelined) {
+        if (bitRate < 0) {
+            throw new IllegalArgumentException("Bit rate must not be negative");
+        }
+        if (outSampleRate < 0) {
+            throw new IllegalArgumentException("Sample rate must not be negative");
+        }
+        this.bitRate = bitRate;
+        this.quality = quality;
+        this.outSampleRate = outSampleRate;
+        this.channelMode = channelMode;
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Re-encodes the given mp3 file.
+     * The input file is memory mapped.
+     * The encoder delay and padding of the input are removed and the output gets an accurate Info/LAME tag,
+     * so the length of the audio doesn't change when transcoding a file multiple times.
+     *
+     * @param input  the path of the mp3 file to read
+     * @param output the path of the mp3 file to write
+     * @throws IOException              if an I/O error occurs or the input file is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public void transcode(Path input, Path output) throws IOException, UnknownPlatformException {
+        try (Mp3Decoder decoder = Mp3Decoder.map(input); FileChannel channel = openOutput(output)) {
+            decoder.setGapless(true);
+            transcode(decoder, config -> new Mp3Encoder(config, channel));
+        }
+    }
+
+    /**
+     * Re-encodes the given mp3 file with a decoder context from the given pool.
+     * The encoder is always created for the file, see {@link #transcode(Path, Path)}.
+     *
+     * @param input       the path of the mp3 file to read
+     * @param output      the path of the mp3 file to write
+     * @param decoderPool the pool to acquire the decoder from
+     * @return the duration of the transcoded audio in seconds
+     * @throws IOException              if an I/O error occurs or the input file is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public double transcode(Path input, Path output, Mp3DecoderPool decoderPool) throws IOException, UnknownPlatformException {
+        try (Mp3Decoder decoder = decoderPool.map(input); FileChannel channel = openOutput(output)) {
+            decoder.setGapless(true);
+            return transcode(decoder, config -> new Mp3Encoder(config, channel));
+        }
+    }
+
+    private static FileChannel openOutput(Path output) throws IOException {
+        return FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Decodes all remaining frames of the given decoder and encodes them to the given output stream.
+     *
+     * @param decoder      the decoder to read the samples from - The decoder is not closed, a downmix enabled with {@link Mp3Decoder#setDownmix(boolean)} is kept
+     * @param outputStream the output stream to write the mp3 data to - The stream is not closed
+     * @throws IOException              if an I/O error occurs or the mp3 data is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public void transcode(Mp3Decoder decoder, OutputStream outputStream) throws IOException, UnknownPlatformException {
+        transcode(decoder, config -> new Mp3Encoder(config, new NonClosingOutputStream(outputStream)));
+    }
+
+    /**
+     * @return the duration of the transcoded audio in seconds
+     */
+    private double transcode(Mp3Decoder decoder, EncoderFactory encoderFactory) throws IOException, UnknownPlatformException {
+        // Mixing down while decoding halves the samples that are passed to the encoder
+        // A downmix that was enabled on the decoder is kept for the other channel modes
+        if (channelMode == Mp3EncoderConfig.ChannelMode.MONO) {
+            decoder.setDownmix(true);
+        }
+        int bufferSize = decoder.getMaxSamplesPerFrame() * FRAMES_PER_BUFFER;
+        // The first buffer is decoded before creating the encoder, as the format of the audio is only known after parsing the first header
+        PcmBuffer first = new PcmBuffer(bufferSize);
+        if (!first.decode(decoder)) {
+            throw new IOException("No audio data found");
+        }
+        if (!decoder.headerParsed()) {
+            throw new IOException("No header found");
+        }
+        int targetSampleRate = Math.min(outSampleRate, decoder.getSampleRate());
+        int targetBitRate = bitRate;
+        if (bitRate == SOURCE_BIT_RATE) {
+            // The first frame of a VBR file is usually far from the average bit rate
+            targetBitRate = Mp3FrameHeader.getNearestBitRate(decoder.getAverageBitRate(), targetSampleRate == Mp3EncoderConfig.SAMPLE_RATE_AUTO ? decoder.getSampleRate() : targetSampleRate);
+        }
+        Mp3EncoderConfig config = Mp3EncoderConfig.builder(decoder.getChannelCount(), decoder.getSampleRate())
+                .cbr(targetBitRate)
+                .quality(quality)
+                .outSampleRate(targetSampleRate)
+                .channelMode(decoder.getChannelCount() == 1 ? Mp3EncoderConfig.ChannelMode.AUTO : channelMode)
+                .build();
+        long sampleCount;
+        try (Mp3Encoder encoder = encoderFactory.create(config)) {
+            if (pipelined) {
+                sampleCount = transcodePipelined(decoder, encoder, first, bufferSize);
+            } else {
+                sampleCount = transcodeSequential(decoder, encoder, first);
+            }
+        }
+        return (double) (sampleCount / decoder.getChannelCount()) / (double) decoder.getSampleRate();
+    }
+
+    /**
+     * @return the number of samples of all channels that were encoded
+     */
+    private static long transcodeSequential(Mp3Decoder decoder, Mp3Encoder encoder, PcmBuffer buffer) throws IOException {
+        long sampleCount = 0L;
+        do {
+            encoder.write(buffer.samples, 0, buffer.length);
+            sampleCount += buffer.length;
+        } while (buffer.decode(decoder));
+        return sampleCount;
+    }
+
+    /**
+     * @return the number of samples of all channels that were encoded
+     */
+    private static long transcodePipelined(Mp3Decoder decoder, Mp3Encoder encoder, PcmBuffer first, int bufferSize) throws IOException {
+        SpscQueue<PcmBuffer> filled = new SpscQueue<>(BUFFER_COUNT);
+        SpscQueue<PcmBuffer> free = new SpscQueue<>(BUFFER_COUNT);
+        filled.offer(first);
+        for (int i = 1; i < BUFFER_COUNT; i++) {
+            free.offer(new PcmBuffer(bufferSize));
+        }
+
+        long sampleCount = 0L;
+        DecodeTask task = new DecodeTask(decoder, filled, free);
+        Thread thread = new Thread(task, "Mp3Transcoder decoder");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            int idleCount = 0;
+            while (true) {
+                PcmBuffer buffer = filled.poll();
+                if (buffer == null) {
+                    if (!task.done) {
+                        idleCount = idle(idleCount);
+                        continue;
+                    }
+                    // The decoder might have offered its last buffer right before finishing
+                    buffer = filled.poll();
+                    if (buffer == null) {
+                        break;
+                    }
+                }
+                idleCount = 0;
+                encoder.write(buffer.samples, 0, buffer.length);
+                sampleCount += buffer.length;
+                free.offer(buffer);
+            }
+        } finally {
+            task.cancelled = true;
+            joinUninterruptibly(thread);
+        }
+
+        Throwable error = task.error;
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new IOException(error);
+        }
+        return sampleCount;
+    }
+
+    /**
+     * Waits a little before checking a queue again.
+     * The thread spins first, then yields and finally parks, so short waits don't cost a context switch.
+     *
+     * @param idleCount the number of times the thread already waited
+     * @return the new number of times the thread waited
+     */
+    private static int idle(int idleCount) {
+        if (idleCount >= SPIN_COUNT + YIELD_COUNT) {
+            LockSupport.parkNanos(PARK_NANOS);
+        } else if (idleCount >= SPIN_COUNT) {
+            Thread.yield();
+        }
+        return idleCount + 1;
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Decodes frames into free buffers and passes them to the encoding thread.
+     */
+    private static class DecodeTask implements Runnable {
+
+        private final Mp3Decoder decoder;
+        private final SpscQueue<PcmBuffer> filled;
+        private final SpscQueue<PcmBuffer> free;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        @Nullable
+        private volatile Throwable error;
+
+        private DecodeTask(Mp3Decoder decoder, SpscQueue<PcmBuffer> filled, SpscQueue<PcmBuffer> free) {
+            this.decoder = decoder;
+            this.filled = filled;
+            this.free = free;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int idleCount = 0;
+                while (!cancelled) {
+                    PcmBuffer buffer = free.poll();
+                    if (buffer == null) {
+                        idleCount = idle(idleCount);
+                        continue;
+                    }
+                    idleCount = 0;
+                    if (!buffer.decode(decoder)) {
+                        break;
+                    }
+                    // There are never more buffers than the queue can hold
+                    filled.offer(buffer);
+                }
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                done = true;
+            }
+        }
+    }
+
+    private static class PcmBuffer {
+
+        private final short[] samples;
+        private int length;
+
+        private PcmBuffer(int size) {
+            samples = new short[size];
+        }
+
+        /**
+         * Decodes the next frames into this buffer.
+         *
+         * @param decoder the decoder
+         * @return <code>false</code> if the end of the mp3 data is reached
+         * @throws IOException if an I/O error occurs
+         */
+        private boolean decode(Mp3Decoder decoder) throws IOException {
+            while (true) {
+                int decoded = decoder.decodeFrames(samples, 0, samples.length);
+                if (decoded < 0) {
+                    length = 0;
+                    return false;
+                }
+                if (decoded > 0) {
+                    length = decoded;
+                    return true;
+                }
+            }
+        }
+    }
+
+    private interface EncoderFactory {
+        Mp3Encoder create(Mp3EncoderConfig config) throws IOException, UnknownPlatformException;
+    }
+
+    /**
+     * Passes everything to the given stream, except closing it.
+     */
+    private static class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream outputStream;
+
+        private NonClosingOutputStream(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            outputStream.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            outputStream.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            outputStream.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            outputStream.flush();
+        }
+    }
+
+}
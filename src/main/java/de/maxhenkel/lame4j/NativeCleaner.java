@@ -0,0 +1,230 @@
+package de.maxhenkel.lame4j;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Destroys the native contexts of encoders and decoders that become unreachable without being closed.
+ * On Java 9 and later, the owners are registered with a {@link java.lang.ref.Cleaner}, which is looked up by reflection as this library targets Java 8.
+ * On Java 8, a single daemon thread waits for the phantom references of unreachable owners and destroys their contexts.
+ */
+class NativeCleaner {
+
+    private static final Logger LOGGER = Logger.getLogger(NativeCleaner.class.getPackage().getName());
+
+    private static final String THREAD_NAME = "lame4j-cleaner";
+
+    /**
+     * <code>Cleaner.register(Object, Runnable)</code> bound to the cleaner of this library or <code>null</code> on Java 8.
+     */
+    @Nullable
+    private static final MethodHandle REGISTER;
+    /**
+     * <code>Cleaner.Cleanable.clean()</code> or <code>null</code> on Java 8.
+     */
+    @Nullable
+    private static final MethodHandle CLEAN;
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+    /**
+     * Keeps the phantom references reachable until their context is destroyed or released.
+     */
+    private static final Set<CleanerReference> REFERENCES = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    static {
+        MethodHandle register = null;
+        MethodHandle clean = null;
+        try {
+            Class<?> cleanerClass = Class.forName("java.lang.ref.Cleaner");
+            Class<?> cleanableClass = Class.forName("java.lang.ref.Cleaner$Cleanable");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            ThreadFactory threadFactory = runnable -> new Thread(runnable, THREAD_NAME);
+            Object cleaner = lookup.findStatic(cleanerClass, "create", MethodType.methodType(cleanerClass, ThreadFactory.class)).invoke(threadFactory);
+            register = lookup.findVirtual(cleanerClass, "register", MethodType.methodType(cleanableClass, Object.class, Runnable.class))
+                    .bindTo(cleaner)
+                    .asType(MethodType.methodType(Object.class, Object.class, Runnable.class));
+            clean = lookup.findVirtual(cleanableClass, "clean", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+        } catch (ClassNotFoundException e) {
+            // Java 8 uses the phantom reference queue
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Failed to create cleaner, falling back to phantom references", t);
+            register = null;
+            clean = null;
+        }
+        REGISTER = register;
+        CLEAN = clean;
+    }
+
+    private NativeCleaner() {
+
+    }
+
+    /**
+     * Registers a native context that is destroyed once the given owner becomes unreachable.
+     *
+     * @param owner     the encoder or decoder that owns the context - Must not be referenced by the destroyer
+     * @param type      the type of the owner for leak reports
+     * @param pointer   the native context
+     * @param destroyer destroys the native context
+     * @return the handle to destroy or release the context when the owner is closed
+     */
+    public static Cleanable register(Object owner, String type, long pointer, LongConsumer destroyer) {
+        Throwable allocationSite = Mp3Metrics.isLeakTracking() ? new Throwable(type + " allocated here") : null;
+        Cleanable cleanable = new Cleanable(type, pointer, destroyer, allocationSite);
+        if (REGISTER != null) {
+            cleanable.registration = registerWithCleaner(owner, cleanable);
+        } else {
+            cleanable.registration = registerWithQueue(owner, cleanable);
+        }
+        return cleanable;
+    }
+
+    private static Runnable registerWithCleaner(Object owner, Cleanable cleanable) {
+        Object registration;
+        try {
+            registration = REGISTER.invokeExact(owner, (Runnable) cleanable::destroyUnreachable);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+        // Cleaning the registration runs the action, which does nothing once the cleanable is unregistered
+        return () -> {
+            try {
+                CLEAN.invokeExact(registration);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        };
+    }
+
+    private static Runnable registerWithQueue(Object owner, Cleanable cleanable) {
+        if (STARTED.compareAndSet(false, true)) {
+            Thread thread = new Thread(NativeCleaner::run, THREAD_NAME);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        CleanerReference reference = new CleanerReference(owner, cleanable);
+        REFERENCES.add(reference);
+        return () -> {
+            REFERENCES.remove(reference);
+            reference.clear();
+        };
+    }
+
+    private static void run() {
+        while (true) {
+            try {
+                CleanerReference reference = (CleanerReference) QUEUE.remove();
+                REFERENCES.remove(reference);
+                reference.cleanable.destroyUnreachable();
+            } catch (InterruptedException e) {
+                // This thread must keep running as long as there are contexts to destroy
+            }
+        }
+    }
+
+    private static void leaked(Cleanable cleanable) {
+        Mp3Metrics.leaked();
+        if (cleanable.allocationSite != null) {
+            LOGGER.log(Level.WARNING, cleanable.type + " was not closed before being garbage collected", cleanable.allocationSite);
+        }
+        Mp3MetricsListener listener = Mp3Metrics.getListener();
+        if (listener != null) {
+            listener.leaked(cleanable.type, cleanable.allocationSite);
+        }
+    }
+
+    private static class CleanerReference extends PhantomReference<Object> {
+
+        private final Cleanable cleanable;
+
+        private CleanerReference(Object owner, Cleanable cleanable) {
+            super(owner, QUEUE);
+            this.cleanable = cleanable;
+        }
+
+    }
+
+    static class Cleanable {
+
+        private final String type;
+        private final long pointer;
+        private final LongConsumer destroyer;
+        @Nullable
+        private final Throwable allocationSite;
+        private final AtomicBoolean registered;
+        /**
+         * Removes the owner from the cleaner or the reference queue.
+         * This is set before the cleanable is returned to the owner.
+         */
+        private Runnable registration;
+
+        private Cleanable(String type, long pointer, LongConsumer destroyer, @Nullable Throwable allocationSite) {
+            this.type = type;
+            this.pointer = pointer;
+            this.destroyer = destroyer;
+            this.allocationSite = allocationSite;
+            registered = new AtomicBoolean(true);
+        }
+
+        /**
+         * @return <code>false</code> if the context was already destroyed or released
+         */
+        private boolean unregister() {
+            return registered.compareAndSet(true, false);
+        }
+
+        /**
+         * Destroys the native context of an owner that became unreachable.
+         * Errors are logged, as the cleaner thread must not die.
+         */
+        private void destroyUnreachable() {
+            try {
+                if (unregister()) {
+                    destroyer.accept(pointer);
+                    leaked(this);
+                }
+            } catch (Throwable t) {
+                LOGGER.log(Level.SEVERE, "Failed to destroy native context", t);
+            }
+        }
+
+        /**
+         * Destroys the native context if it wasn't destroyed or released yet.
+         */
+        public void clean() {
+            if (unregister()) {
+                registration.run();
+                destroyer.accept(pointer);
+            }
+        }
+
+        /**
+         * Stops tracking the native context without destroying it, for example when it is returned to a pool.
+         */
+        public void release() {
+            if (unregister()) {
+                registration.run();
+            }
+        }
+
+    }
+
+}
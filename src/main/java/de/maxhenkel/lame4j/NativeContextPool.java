@@ -0,0 +1,148 @@
+package de.maxhenkel.lame4j;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Keeps idle native contexts, so they can be reused instead of being created for every decoder.
+ * Contexts are grouped by a key, only contexts with the same key are interchangeable.
+ *
+ * @param <K> the type of the key
+ */
+class NativeContextPool<K> {
+
+    private final int maxIdle;
+    private final long idleTimeoutNanos;
+    private final LongConsumer destroyer;
+    private final Map<K, ArrayDeque<IdleContext>> idleContexts;
+    private int idleCount;
+    private boolean closed;
+
+    /**
+     * @param maxIdle     the maximum number of idle contexts of all keys
+     * @param idleTimeout the time after which an idle context is destroyed
+     * @param unit        the unit of the idle timeout
+     * @param destroyer   destroys a native context
+     */
+    public NativeContextPool(int maxIdle, long idleTimeout, TimeUnit unit, LongConsumer destroyer) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("Maximum number of idle contexts must not be negative");
+        }
+        if (idleTimeout < 0L) {
+            throw new IllegalArgumentException("Idle timeout must not be negative");
+        }
+        this.maxIdle = maxIdle;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.destroyer = destroyer;
+        idleContexts = new HashMap<>();
+    }
+
+    /**
+     * Takes the most recently released context with the given key out of the pool.
+     *
+     * @param key the key of the context
+     * @return the pointer of the context or 0 if there is no idle context with the given key
+     */
+    public long poll(K key) {
+        synchronized (this) {
+            evictIdle(System.nanoTime());
+            ArrayDeque<IdleContext> contexts = idleContexts.get(key);
+            if (contexts == null || contexts.isEmpty()) {
+                return 0L;
+            }
+            idleCount--;
+            return contexts.pollFirst().pointer;
+        }
+    }
+
+    /**
+     * Puts the given context back into the pool.
+     * If the pool is full or closed, the context is destroyed instead.
+     *
+     * @param key     the key of the context
+     * @param pointer the pointer of the context - The context needs to be reset already
+     */
+    public void release(K key, long pointer) {
+        synchronized (this) {
+            long now = System.nanoTime();
+            evictIdle(now);
+            if (closed || idleCount >= maxIdle) {
+                destroyer.accept(pointer);
+                return;
+            }
+            idleContexts.computeIfAbsent(key, k -> new ArrayDeque<>()).addFirst(new IdleContext(pointer, now));
+            idleCount++;
+        }
+    }
+
+    /**
+     * Destroys all contexts that were idle for longer than the idle timeout.
+     * This happens automatically whenever a context is taken out of or put back into the pool.
+     */
+    public void evictIdle() {
+        synchronized (this) {
+            evictIdle(System.nanoTime());
+        }
+    }
+
+    private void evictIdle(long now) {
+        Iterator<ArrayDeque<IdleContext>> iterator = idleContexts.values().iterator();
+        while (iterator.hasNext()) {
+            ArrayDeque<IdleContext> contexts = iterator.next();
+            while (!contexts.isEmpty() && now - contexts.peekLast().releaseTime >= idleTimeoutNanos) {
+                destroyer.accept(contexts.pollLast().pointer);
+                idleCount--;
+            }
+            if (contexts.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of idle contexts in the pool
+     */
+    public int getIdleCount() {
+        synchronized (this) {
+            return idleCount;
+        }
+    }
+
+    /**
+     * Destroys all idle contexts.
+     * Contexts that are released after the pool is closed are destroyed immediately.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (ArrayDeque<IdleContext> contexts : idleContexts.values()) {
+                for (IdleContext context : contexts) {
+                    destroyer.accept(context.pointer);
+                }
+            }
+            idleContexts.clear();
+            idleCount = 0;
+        }
+    }
+
+    public boolean isClosed() {
+        synchronized (this) {
+            return closed;
+        }
+    }
+
+    private static class IdleContext {
+        private final long pointer;
+        private final long releaseTime;
+
+        private IdleContext(long pointer, long releaseTime) {
+            this.pointer = pointer;
+            this.releaseTime = releaseTime;
+        }
+    }
+
+}
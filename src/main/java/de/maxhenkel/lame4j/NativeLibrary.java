@@ -0,0 +1,54 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.NativeInitializer;
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Loads the native library exactly once.
+ * The library is loaded by the class initializer of a holder class, so the JVM guarantees that it is only loaded once
+ * and every call after the first one returns without taking a lock.
+ */
+class NativeLibrary {
+
+    private static final String LIBRARY_NAME = "liblame4j";
+
+    /**
+     * Loads the native library if it isn't loaded yet.
+     * <b>NOTE</b>: If loading fails, the same error is reported on every call, the library is not loaded again.
+     *
+     * @throws IOException              if the native library could not be extracted or loaded
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public static void load() throws IOException, UnknownPlatformException {
+        Throwable error = Holder.ERROR;
+        if (error == null) {
+            return;
+        }
+        if (error instanceof UnknownPlatformException) {
+            throw (UnknownPlatformException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new IOException("Failed to load native library", error);
+    }
+
+    private static class Holder {
+        @Nullable
+        private static final Throwable ERROR = loadLibrary();
+
+        @Nullable
+        private static Throwable loadLibrary() {
+            try {
+                NativeInitializer.load(LIBRARY_NAME);
+                return null;
+            } catch (IOException | UnknownPlatformException | LinkageError e) {
+                return e;
+            }
+        }
+    }
+
+}
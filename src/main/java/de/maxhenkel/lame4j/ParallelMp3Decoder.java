@@ -0,0 +1,167 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decodes mp3 data on multiple threads by splitting it into chunks of frames.
+ * Every chunk starts decoding a few frames early to restore the bit reservoir and the synthesis filter bank,
+ * so the decoded samples are the same as when decoding all frames with a single decoder.
+ * See {@link Mp3SeekIndex#getPrimingFrame(int)} for how far back decoding starts.
+ */
+class ParallelMp3Decoder {
+
+    /**
+     * The minimum number of frames in a chunk, so that the frames decoded to restore the decoder state are negligible.
+     */
+    private static final int MIN_CHUNK_FRAMES = 128;
+
+    /**
+     * The number of chunks per thread, so that threads that finish early can pick up the remaining chunks.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Decodes the given mp3 data.
+     *
+     * @param data a direct buffer containing the mp3 data, starting at position 0
+     * @param pool the pool to decode the chunks on
+     * @return the decoded audio data
+     * @throws IOException              if an I/O error occurs or the mp3 data is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    public static DecodedAudio decode(ByteBuffer data, ForkJoinPool pool) throws IOException, UnknownPlatformException {
+        return decode(data, pool, -1);
+    }
+
+    /**
+     * Decodes the given mp3 data.
+     *
+     * @param data          a direct buffer containing the mp3 data, starting at position 0
+     * @param pool          the pool to decode the chunks on
+     * @param maxChunkCount the number of chunks to split the data into or -1 to choose it from the parallelism of the pool - This is limited to the number of frames
+     * @return the decoded audio data
+     * @throws IOException              if an I/O error occurs or the mp3 data is invalid
+     * @throws UnknownPlatformException if the platform is not supported
+     */
+    static DecodedAudio decode(ByteBuffer data, ForkJoinPool pool, int maxChunkCount) throws IOException, UnknownPlatformException {
+        Mp3SeekIndex index = Mp3SeekIndex.build(new ByteBufferInputStream(data.duplicate()));
+        int frameCount = index.getFrameCount();
+        int chunkCount;
+        if (maxChunkCount < 0) {
+            chunkCount = Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, frameCount / MIN_CHUNK_FRAMES));
+        } else {
+            chunkCount = Math.max(1, Math.min(maxChunkCount, frameCount));
+        }
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int startFrame = (int) ((long) frameCount * i / chunkCount);
+            int endFrame = (int) ((long) frameCount * (i + 1) / chunkCount);
+            tasks.add(pool.submit(() -> decodeChunk(data, index, startFrame, endFrame)));
+        }
+
+        Chunk[] chunks = new Chunk[chunkCount];
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = join(tasks.get(i));
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        // The samples of the chunks are used as they are, so they are never copied into a single array
+        List<short[]> samples = new ArrayList<>();
+        long sampleCount = 0L;
+        for (Chunk chunk : chunks) {
+            for (short[] samplesChunk : chunk.samples) {
+                samples.add(samplesChunk);
+                sampleCount += samplesChunk.length;
+            }
+        }
+        if (sampleCount <= 0L) {
+            throw new IOException("No audio data found");
+        }
+
+        Chunk last = chunks[chunks.length - 1];
+        if (last.channelCount < 0 || last.sampleRate < 0 || last.bitRate < 0) {
+            throw new IOException("No header found");
+        }
+        return new DecodedAudio(last.channelCount, last.sampleRate, last.bitRate, samples.toArray(new short[0][]));
+    }
+
+    /**
+     * Decodes the frames of a single chunk.
+     * The first chunk starts at the beginning of the data and the last chunk ends at the end of the data,
+     * so anything before the first or after the last frame is handled the same way a single decoder handles it.
+     */
+    private static Chunk decodeChunk(ByteBuffer data, Mp3SeekIndex index, int startFrame, int endFrame) throws IOException, UnknownPlatformException {
+        int primingFrame = index.getPrimingFrame(startFrame);
+        long start = primingFrame <= 0 ? 0L : index.getFrameOffset(primingFrame);
+        long end = endFrame >= index.getFrameCount() ? data.limit() : index.getFrameOffset(endFrame);
+
+        ByteBuffer chunkData = data.duplicate();
+        chunkData.position((int) start).limit((int) end);
+        try (Mp3Decoder decoder = new Mp3Decoder(chunkData)) {
+            if (startFrame > 0) {
+                decoder.skipTo(index.getFrameOffset(startFrame) - start);
+            }
+            ShortChunkBuffer sampleBuffer = new ShortChunkBuffer((long) (endFrame - startFrame) * index.getSamplesPerFrame() * index.getChannelCount());
+            short[] frames = new short[decoder.getMaxSamplesPerFrame() * 16];
+            int samples;
+            while ((samples = decoder.decodeFrames(frames, 0, frames.length)) >= 0) {
+                sampleBuffer.write(frames, 0, samples);
+            }
+            return new Chunk(sampleBuffer.toChunks(), decoder.getChannelCount(), decoder.getSampleRate(), decoder.getBitRate());
+        }
+    }
+
+    private static Chunk join(ForkJoinTask<Chunk> task) throws IOException, UnknownPlatformException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UnknownPlatformException) {
+                throw (UnknownPlatformException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static class Chunk {
+        private final short[][] samples;
+        private final int channelCount;
+        private final int sampleRate;
+        private final int bitRate;
+
+        private Chunk(short[][] samples, int channelCount, int sampleRate, int bitRate) {
+            this.samples = samples;
+            this.channelCount = channelCount;
+            this.sampleRate = sampleRate;
+            this.bitRate = bitRate;
+        }
+    }
+
+}
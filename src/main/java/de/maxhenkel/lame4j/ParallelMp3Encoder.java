@@ -0,0 +1,239 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Encodes audio on multiple threads by splitting it into segments of whole frames.
+ * Every segment starts encoding a few frames early and stops a few frames late, so the psychoacoustic model and the filter bank of the encoder are in the same state at the segment borders as they would be when encoding all samples with a single encoder.
+ * The frames encoded outside the segment are discarded, which is only possible because the bit reservoir is disabled.
+ */
+class ParallelMp3Encoder {
+
+    /**
+     * The minimum number of frames in a segment, so that the frames encoded outside the segment are negligible.
+     */
+    private static final int MIN_SEGMENT_FRAMES = 256;
+
+    /**
+     * The number of segments per thread, so that threads that finish early can pick up the remaining segments.
+     */
+    private static final int SEGMENTS_PER_THREAD = 4;
+
+    /**
+     * The number of frames that are encoded and discarded before a segment.
+     */
+    private static final int LEAD_IN_FRAMES = 4;
+
+    /**
+     * The number of frames that are encoded and discarded after a segment, which covers the encoder delay and the lookahead of the psychoacoustic model.
+     */
+    private static final int TAIL_FRAMES = 4;
+
+    private final int channels;
+    private final int sampleRate;
+    private final int bitRate;
+    private final int quality;
+
+    public ParallelMp3Encoder(int channels, int sampleRate, int bitRate, int quality) {
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.bitRate = bitRate;
+        this.quality = quality;
+    }
+
+    /**
+     * Encodes the given samples and writes the mp3 data to the given output stream.
+     *
+     * @param samples      the interleaved samples to encode
+     * @param outputStream the output stream to write the mp3 data to - The stream is not closed
+     * @param pool         the pool to encode the segments on
+     * @throws IOException              if an I/O error occurs
+     * @throws UnknownPlatformException if the operating system is not supported
+     */
+    public void encode(short[] samples, OutputStream outputStream, ForkJoinPool pool) throws IOException, UnknownPlatformException {
+        int frameSize;
+        int outSampleRate;
+        int encoderDelay;
+        int lowpassFrequency;
+        String version;
+        try (Mp3Encoder encoder = createEncoder(new ByteArrayOutputStream())) {
+            frameSize = encoder.getFrameSize();
+            outSampleRate = encoder.getOutSampleRate();
+            encoderDelay = encoder.getEncoderDelay();
+            lowpassFrequency = encoder.getLowpassFrequency();
+            version = Mp3Encoder.getLameVersion();
+        }
+        if (samples.length % channels != 0) {
+            throw new IllegalArgumentException("Input length must be a multiple of the number of channels");
+        }
+
+        int sampleCount = samples.length / channels;
+        int frameCount = (int) (((long) sampleCount + frameSize - 1L) / frameSize);
+        int segmentCount = 1;
+        // Segments can only be aligned to frames if LAME doesn't resample the audio
+        if (outSampleRate == sampleRate) {
+            segmentCount = Math.max(1, Math.min(pool.getParallelism() * SEGMENTS_PER_THREAD, frameCount / MIN_SEGMENT_FRAMES));
+        }
+
+        List<ForkJoinTask<Segment>> tasks = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            int startFrame = (int) ((long) frameCount * i / segmentCount);
+            int endFrame = (int) ((long) frameCount * (i + 1) / segmentCount);
+            boolean last = i == segmentCount - 1;
+            tasks.add(pool.submit(() -> encodeSegment(samples, startFrame, endFrame, last, frameSize)));
+        }
+
+        Segment[] segments = new Segment[segmentCount];
+        try {
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = join(tasks.get(i));
+            }
+        } finally {
+            for (ForkJoinTask<Segment> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        int totalFrames = 0;
+        for (Segment segment : segments) {
+            totalFrames += segment.frameOffsets.length;
+        }
+        if (totalFrames <= 0) {
+            return;
+        }
+        long[] frameOffsets = new long[totalFrames];
+        long audioBytes = 0L;
+        int musicCrc = 0;
+        int frame = 0;
+        for (Segment segment : segments) {
+            for (int offset : segment.frameOffsets) {
+                frameOffsets[frame++] = audioBytes + offset - segment.getStart();
+            }
+            audioBytes += segment.getLength();
+            musicCrc = LameTag.crc16(musicCrc, segment.data, segment.getStart(), segment.getLength());
+        }
+
+        Segment first = segments[0];
+        for (int i = 1; first.frameOffsets.length <= 0; i++) {
+            first = segments[i];
+        }
+        Mp3FrameHeader header = Mp3FrameHeader.parse(first.data, first.getStart());
+        if (header != null) {
+            long padding = (long) totalFrames * frameSize - encoderDelay - sampleCount;
+            byte[] tag = LameTag.create(header, frameOffsets, audioBytes, musicCrc, version, quality, lowpassFrequency, sampleRate, encoderDelay, padding);
+            if (tag != null) {
+                outputStream.write(tag);
+            }
+        }
+        for (Segment segment : segments) {
+            outputStream.write(segment.data, segment.getStart(), segment.getLength());
+        }
+    }
+
+    private Mp3Encoder createEncoder(OutputStream outputStream) throws IOException, UnknownPlatformException {
+        return new Mp3Encoder(Mp3EncoderConfig.builder(channels, sampleRate).cbr(bitRate).quality(quality).build(), true, false, outputStream);
+    }
+
+    /**
+     * Encodes the frames of a single segment.
+     * The last segment is encoded until the end of the samples and flushed like a single encoder would be.
+     */
+    private Segment encodeSegment(short[] samples, int startFrame, int endFrame, boolean last, int frameSize) throws IOException, UnknownPlatformException {
+        int leadIn = Math.min(LEAD_IN_FRAMES, startFrame);
+        int from = (int) ((long) (startFrame - leadIn) * frameSize * channels);
+        int to = samples.length;
+        if (!last) {
+            to = (int) Math.min(samples.length, (long) (endFrame + TAIL_FRAMES) * frameSize * channels);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Mp3Encoder.getMaxEncodedSize(to - from));
+        try (Mp3Encoder encoder = createEncoder(out)) {
+            encoder.write(samples, from, to - from);
+        }
+        byte[] data = out.toByteArray();
+
+        int[] offsets = findFrames(data);
+        int keepEnd = last ? offsets.length : leadIn + endFrame - startFrame;
+        if (keepEnd > offsets.length) {
+            throw new IOException("Encoder produced less frames than expected");
+        }
+        return new Segment(data, Arrays.copyOfRange(offsets, Math.min(leadIn, keepEnd), keepEnd), keepEnd < offsets.length ? offsets[keepEnd] : data.length);
+    }
+
+    /**
+     * Finds the frames in the output of an encoder that doesn't write a Xing/LAME tag.
+     */
+    private static int[] findFrames(byte[] data) throws IOException {
+        int[] offsets = new int[64];
+        int count = 0;
+        int position = 0;
+        while (position < data.length) {
+            Mp3FrameHeader header = Mp3FrameHeader.parse(data, position);
+            if (header == null) {
+                throw new IOException("Encoder produced an invalid frame");
+            }
+            if (count >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[count++] = position;
+            position += header.getFrameSize();
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private static Segment join(ForkJoinTask<Segment> task) throws IOException, UnknownPlatformException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UnknownPlatformException) {
+                throw (UnknownPlatformException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static class Segment {
+        private final byte[] data;
+        private final int[] frameOffsets;
+        private final int end;
+
+        private Segment(byte[] data, int[] frameOffsets, int end) {
+            this.data = data;
+            this.frameOffsets = frameOffsets;
+            this.end = end;
+        }
+
+        private int getStart() {
+            return frameOffsets.length > 0 ? frameOffsets[0] : end;
+        }
+
+        private int getLength() {
+            return end - getStart();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package de.maxhenkel.lame4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects samples in a list of fixed size arrays.
+ * Unlike {@link ShortArrayBuffer}, the samples are never copied to grow the buffer and the size is not limited by the maximum array length.
+ * This class is not thread safe.
+ */
+class ShortChunkBuffer {
+
+    /**
+     * The number of samples per chunk.
+     */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private final List<short[]> chunks;
+    private long expectedSize;
+    private long size;
+    private short[] current;
+    private int currentSize;
+
+    /**
+     * @param expectedSize the expected number of samples or -1 if unknown - If the expected size is correct, the last chunk is allocated with the exact size
+     */
+    public ShortChunkBuffer(long expectedSize) {
+        this.expectedSize = expectedSize;
+        chunks = new ArrayList<>(expectedSize > 0L ? (int) Math.min(1024L, (expectedSize + CHUNK_SIZE - 1L) / CHUNK_SIZE) : 16);
+        current = new short[0];
+    }
+
+    public void write(short[] samples, int offset, int length) {
+        while (length > 0) {
+            if (currentSize >= current.length) {
+                nextChunk();
+            }
+            int count = Math.min(length, current.length - currentSize);
+            System.arraycopy(samples, offset, current, currentSize, count);
+            currentSize += count;
+            size += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void nextChunk() {
+        int chunkSize = CHUNK_SIZE;
+        if (expectedSize > size) {
+            chunkSize = (int) Math.min(CHUNK_SIZE, expectedSize - size);
+        } else {
+            // The estimate was too small, so all following chunks get the full size
+            expectedSize = -1L;
+        }
+        current = new short[chunkSize];
+        currentSize = 0;
+        chunks.add(current);
+    }
+
+    /**
+     * @return the number of samples in the buffer
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the chunks containing all samples.
+     * Only the last chunk is copied if it isn't completely filled.
+     *
+     * @return the chunks
+     */
+    public short[][] toChunks() {
+        if (currentSize < current.length && !chunks.isEmpty()) {
+            current = Arrays.copyOf(current, currentSize);
+            chunks.set(chunks.size() - 1, current);
+        }
+        return chunks.toArray(new short[0][]);
+    }
+
+}
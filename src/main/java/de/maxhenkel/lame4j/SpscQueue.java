@@ -0,0 +1,79 @@
+package de.maxhenkel.lame4j;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free queue for exactly one producer thread and one consumer thread.
+ * Elements are published with ordered writes of the indices, so neither side ever blocks or takes a lock.
+ *
+ * @param <T> the type of the elements
+ */
+class SpscQueue<T> {
+
+    private final Object[] elements;
+    private final int mask;
+    /**
+     * The index of the next element to poll, only written by the consumer.
+     */
+    private final AtomicLong head;
+    /**
+     * The index of the next element to offer, only written by the producer.
+     */
+    private final AtomicLong tail;
+
+    /**
+     * @param capacity the maximum number of elements - Rounded up to the next power of two
+     */
+    public SpscQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        elements = new Object[size];
+        mask = size - 1;
+        head = new AtomicLong();
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Adds an element to the queue.
+     * This must only be called by the producer thread.
+     *
+     * @param element the element
+     * @return <code>false</code> if the queue is full
+     */
+    public boolean offer(T element) {
+        long currentTail = tail.get();
+        if (currentTail - head.get() >= elements.length) {
+            return false;
+        }
+        elements[(int) currentTail & mask] = element;
+        tail.lazySet(currentTail + 1L);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element from the queue.
+     * This must only be called by the consumer thread.
+     *
+     * @return the element or <code>null</code> if the queue is empty
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long currentHead = head.get();
+        if (currentHead >= tail.get()) {
+            return null;
+        }
+        int index = (int) currentHead & mask;
+        T element = (T) elements[index];
+        elements[index] = null;
+        head.lazySet(currentHead + 1L);
+        return element;
+    }
+
+}
@@ -0,0 +1,174 @@
+package de.maxhenkel.lame4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * The Xing, Info or VBRI tag that encoders store in the first frame of an mp3 file.
+ */
+class XingHeader {
+
+    private static final int FLAG_FRAMES = 0x1;
+    private static final int FLAG_BYTES = 0x2;
+    private static final int FLAG_TOC = 0x4;
+    private static final int FLAG_VBR_SCALE = 0x8;
+
+    private static final int VBRI_OFFSET = Mp3FrameHeader.HEADER_SIZE + 32;
+
+    private final boolean vbr;
+    private final long frameCount;
+    private final long byteCount;
+    @Nullable
+    private final byte[] toc;
+    private final int encoderDelay;
+    private final int encoderPadding;
+
+    private XingHeader(boolean vbr, long frameCount, long byteCount, @Nullable byte[] toc, int encoderDelay, int encoderPadding) {
+        this.vbr = vbr;
+        this.frameCount = frameCount;
+        this.byteCount = byteCount;
+        this.toc = toc;
+        this.encoderDelay = encoderDelay;
+        this.encoderPadding = encoderPadding;
+    }
+
+    /**
+     * Parses the tag of the given frame.
+     *
+     * @param header the header of the frame
+     * @param data   the data containing the frame
+     * @param offset the offset of the frame in the data
+     * @return the tag or <code>null</code> if the frame does not contain a tag
+     */
+    @Nullable
+    public static XingHeader parse(Mp3FrameHeader header, byte[] data, int offset) {
+        int end = Math.min(data.length, offset + header.getFrameSize());
+        XingHeader xing = parseXing(data, offset + header.getSideInfoEnd(), end);
+        if (xing != null) {
+            return xing;
+        }
+        return parseVbri(data, offset + VBRI_OFFSET, end);
+    }
+
+    @Nullable
+    private static XingHeader parseXing(byte[] data, int pos, int end) {
+        if (pos + 8 > end) {
+            return null;
+        }
+        boolean vbr;
+        if (matches(data, pos, "Xing")) {
+            vbr = true;
+        } else if (matches(data, pos, "Info")) {
+            vbr = false;
+        } else {
+            return null;
+        }
+        int flags = readInt(data, pos + 4);
+        pos += 8;
+
+        long frameCount = -1L;
+        long byteCount = -1L;
+        byte[] toc = null;
+        if ((flags & FLAG_FRAMES) != 0) {
+            if (pos + 4 > end) {
+                return null;
+            }
+            frameCount = readInt(data, pos) & 0xFFFFFFFFL;
+            pos += 4;
+        }
+        if ((flags & FLAG_BYTES) != 0) {
+            if (pos + 4 > end) {
+                return null;
+            }
+            byteCount = readInt(data, pos) & 0xFFFFFFFFL;
+            pos += 4;
+        }
+        if ((flags & FLAG_TOC) != 0) {
+            if (pos + 100 > end) {
+                return null;
+            }
+            toc = new byte[100];
+            System.arraycopy(data, pos, toc, 0, toc.length);
+            pos += 100;
+        }
+        if ((flags & FLAG_VBR_SCALE) != 0) {
+            pos += 4;
+        }
+
+        int encoderDelay = -1;
+        int encoderPadding = -1;
+        // The LAME extension (also used by other encoders) stores the delay and padding as two 12-bit values
+        if (pos + 24 <= end && data[pos] != 0) {
+            int delayPadding = (data[pos + 21] & 0xFF) << 16 | (data[pos + 22] & 0xFF) << 8 | data[pos + 23] & 0xFF;
+            encoderDelay = delayPadding >>> 12;
+            encoderPadding = delayPadding & 0xFFF;
+        }
+        return new XingHeader(vbr, frameCount, byteCount, toc, encoderDelay, encoderPadding);
+    }
+
+    @Nullable
+    private static XingHeader parseVbri(byte[] data, int pos, int end) {
+        if (pos + 18 > end || !matches(data, pos, "VBRI")) {
+            return null;
+        }
+        long byteCount = readInt(data, pos + 10) & 0xFFFFFFFFL;
+        long frameCount = readInt(data, pos + 14) & 0xFFFFFFFFL;
+        return new XingHeader(true, frameCount, byteCount, null, -1, -1);
+    }
+
+    private static boolean matches(byte[] data, int pos, String tag) {
+        for (int i = 0; i < tag.length(); i++) {
+            if (data[pos + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] data, int pos) {
+        return (data[pos] & 0xFF) << 24 | (data[pos + 1] & 0xFF) << 16 | (data[pos + 2] & 0xFF) << 8 | data[pos + 3] & 0xFF;
+    }
+
+    /**
+     * @return <code>false</code> if this is an Info tag, which is written for constant bit rate files
+     */
+    public boolean isVbr() {
+        return vbr;
+    }
+
+    /**
+     * @return the number of audio frames, not including the frame of the tag or -1 if not present
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return the size of the mp3 data in bytes or -1 if not present
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the seek table with 100 entries, each being the position in the file in 1/256 of the file size or <code>null</code> if not present
+     */
+    @Nullable
+    public byte[] getToc() {
+        return toc;
+    }
+
+    /**
+     * @return the number of samples the encoder added to the start or -1 if not present
+     */
+    public int getEncoderDelay() {
+        return encoderDelay;
+    }
+
+    /**
+     * @return the number of samples the encoder added to the end or -1 if not present
+     */
+    public int getEncoderPadding() {
+        return encoderPadding;
+    }
+
+}
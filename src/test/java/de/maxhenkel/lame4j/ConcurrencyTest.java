@@ -0,0 +1,114 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ConcurrencyTest {
+
+    private static final int CONTEXT_COUNT = 4000;
+
+    @Test
+    @DisplayName("Create concurrently")
+    void createConcurrently() throws Exception {
+        byte[] mp3 = createMp3();
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return createContexts(mp3, CONTEXT_COUNT / threads);
+                }));
+            }
+            start.countDown();
+            int created = 0;
+            for (Future<Integer> future : futures) {
+                created += future.get();
+            }
+            assertEquals(CONTEXT_COUNT / threads * threads * 2, created);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Creation throughput")
+    void creationThroughput() throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        assumeTrue(threads >= 4, "Not enough cores");
+        assumeTrue(Boolean.parseBoolean(System.getProperty("lame4j.test.scaling", "true")), "Scaling checks are disabled");
+        byte[] mp3 = createMp3();
+
+        // Warm up the JIT and load the native library
+        createContexts(mp3, 200);
+
+        long sequentialStart = System.nanoTime();
+        createContexts(mp3, CONTEXT_COUNT);
+        long sequentialTime = System.nanoTime() - sequentialStart;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                tasks.add(() -> createContexts(mp3, CONTEXT_COUNT / threads));
+            }
+            long parallelStart = System.nanoTime();
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            long parallelTime = System.nanoTime() - parallelStart;
+
+            // With a global lock, creating the same number of contexts on multiple threads is not faster than on a single thread
+            // The margin is small, as allocations in lame_init contend on malloc and shared runners rarely get all cores
+            assertTrue(parallelTime * 4L < sequentialTime * 3L, String.format("Creating %d contexts took %d ms on one thread and %d ms on %d threads", CONTEXT_COUNT, sequentialTime / 1_000_000L, parallelTime / 1_000_000L, threads));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates and closes the given number of encoders and decoders.
+     *
+     * @return the number of created encoders and decoders
+     */
+    private static int createContexts(byte[] mp3, int count) throws IOException, UnknownPlatformException {
+        int created = 0;
+        for (int i = 0; i < count; i++) {
+            try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, new ByteArrayOutputStream())) {
+                assertFalse(encoder.isClosed());
+                created++;
+            }
+            try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+                assertFalse(decoder.isClosed());
+                created++;
+            }
+        }
+        return created;
+    }
+
+    private static byte[] createMp3() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 880D}, 44100, 1));
+        }
+        return out.toByteArray();
+    }
+
+}
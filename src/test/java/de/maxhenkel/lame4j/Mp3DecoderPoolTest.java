@@ -0,0 +1,50 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp3DecoderPoolTest {
+
+    @Test
+    @DisplayName("Reuse decoder")
+    void reuseDecoder() throws IOException, UnknownPlatformException {
+        byte[] stereo = encode(2, 44100, TestUtils.generateAudio(new double[]{440D}, 44100 * 2, 1));
+        byte[] mono = encode(1, 22050, TestUtils.generateAudio(new double[]{1000D}, 22050, 1));
+
+        try (Mp3DecoderPool pool = new Mp3DecoderPool(2, 1L, TimeUnit.MINUTES)) {
+            for (byte[] mp3 : new byte[][]{stereo, mono, stereo}) {
+                DecodedAudio expected = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+                ShortArrayBuffer buffer = new ShortArrayBuffer();
+                try (Mp3Decoder decoder = pool.acquire(new ByteArrayInputStream(mp3))) {
+                    assertFalse(decoder.headerParsed());
+                    assertEquals(0L, decoder.getFrameCount());
+                    short[] samples;
+                    while ((samples = decoder.decodeNextFrame()) != null) {
+                        buffer.writeShorts(samples);
+                    }
+                    assertEquals(expected.getChannelCount(), decoder.getChannelCount());
+                    assertEquals(expected.getSampleRate(), decoder.getSampleRate());
+                }
+                assertEquals(1, pool.getIdleCount());
+                assertArrayEquals(expected.getSamples(), buffer.toShortArray());
+            }
+        }
+    }
+
+    private static byte[] encode(int channels, int sampleRate, short[] samples) throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(channels, sampleRate, 128, 5, out)) {
+            encoder.write(samples);
+        }
+        return out.toByteArray();
+    }
+
+}
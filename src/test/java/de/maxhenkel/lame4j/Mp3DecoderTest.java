@@ -4,9 +4,21 @@ import de.maxhenkel.nativeutils.UnknownPlatformException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import javax.sound.sampled.AudioFormat;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,4 +48,498 @@ public class Mp3DecoderTest {
         assertEquals(1, decoded.getChannelCount());
     }
 
+    @Test
+    @DisplayName("Decode into buffer")
+    void decodeIntoBuffer() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 44100 * 2, 1));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        DecodedAudio decoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+
+        ShortArrayBuffer buffer = new ShortArrayBuffer();
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+            short[] dst = new short[decoder.getMaxSamplesPerFrame() + 10];
+            assertThrows(IllegalArgumentException.class, () -> decoder.decodeNextFrame(dst, 11));
+            int samples;
+            while ((samples = decoder.decodeNextFrame(dst, 10)) >= 0) {
+                buffer.write(dst, 10, samples);
+            }
+        }
+
+        assertArrayEquals(decoded.getSamples(), buffer.toShortArray());
+    }
+
+    @Test
+    @DisplayName("Decode direct")
+    void decodeDirect() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 44100 * 2, 1));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        DecodedAudio decoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+
+        ByteBuffer input = ByteBuffer.allocateDirect(mp3.length);
+        input.put(mp3).flip();
+        ShortBuffer output = ByteBuffer.allocateDirect(decoded.getSamples().length * 2 + 4608 * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        try (Mp3Decoder decoder = new Mp3Decoder(input)) {
+            while (decoder.decodeNextFrame(output) >= 0) {
+            }
+            assertEquals(2, decoder.getChannelCount());
+        }
+        assertEquals(0, input.position());
+        output.flip();
+        short[] direct = new short[output.remaining()];
+        output.get(direct);
+
+        assertArrayEquals(decoded.getSamples(), direct);
+    }
+
+    @Test
+    @DisplayName("Decode frames")
+    void decodeFrames() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 44100 * 2, 3));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        ShortArrayBuffer frameBuffer = new ShortArrayBuffer();
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+            short[] frame;
+            while ((frame = decoder.decodeNextFrame()) != null) {
+                frameBuffer.writeShorts(frame);
+            }
+        }
+
+        ShortArrayBuffer batchBuffer = new ShortArrayBuffer();
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+            short[] dst = new short[decoder.getMaxSamplesPerFrame() * 5];
+            assertThrows(IllegalArgumentException.class, () -> decoder.decodeFrames(dst, 0, decoder.getMaxSamplesPerFrame() - 1));
+            int samples;
+            while ((samples = decoder.decodeFrames(dst, 1, dst.length - 1)) >= 0) {
+                assertTrue(samples <= decoder.getMaxSamplesPerFrame() * 4);
+                batchBuffer.write(dst, 1, samples);
+            }
+        }
+
+        assertArrayEquals(frameBuffer.toShortArray(), batchBuffer.toShortArray());
+    }
+
+    @Test
+    @DisplayName("Stream reads")
+    void streamReads() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 44100 * 2, 10));
+        }
+
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(out.toByteArray()))) {
+            short[] dst = new short[decoder.getMaxSamplesPerFrame()];
+            while (decoder.decodeNextFrame(dst, 0) >= 0) {
+            }
+            assertTrue(decoder.getFrameCount() > 300);
+            assertTrue(decoder.getStreamReadCount() * 10 < decoder.getFrameCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Seek")
+    void seek() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 554.37D}, 44100 * 2, 10));
+        }
+        byte[] mp3 = out.toByteArray();
+        short[] samples = Mp3Decoder.decode(new ByteArrayInputStream(mp3)).getSamples();
+
+        Path file = Files.createTempFile("lame4j", ".mp3");
+        try {
+            Files.write(file, mp3);
+            try (Mp3Decoder decoder = new Mp3Decoder(FileChannel.open(file, StandardOpenOption.READ))) {
+                assertEquals(samples.length / 2, decoder.getSampleCount());
+                long[] positions = {0L, 1L, 1152L, 44100L * 5L + 17L, 44100L * 3L, decoder.getSampleCount() - 100L};
+                for (long position : positions) {
+                    decoder.seekToSample(position);
+                    ShortArrayBuffer buffer = new ShortArrayBuffer();
+                    short[] dst = new short[decoder.getMaxSamplesPerFrame() * 4];
+                    int decoded;
+                    while (buffer.size() < 4096 && (decoded = decoder.decodeFrames(dst, 0, dst.length)) >= 0) {
+                        buffer.write(dst, 0, decoded);
+                    }
+                    short[] expected = Arrays.copyOfRange(samples, (int) position * 2, (int) Math.min(samples.length, position * 2 + buffer.size()));
+                    assertArrayEquals(expected, buffer.toShortArray());
+                }
+
+                decoder.seekToSample(decoder.getSampleCount() + 1L);
+                assertEquals(-1, decoder.decodeNextFrame(new short[decoder.getMaxSamplesPerFrame()], 0));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Seek VBR")
+    void seekVbr() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(Mp3EncoderConfig.builder(2, 44100).vbr(2F).build(), out)) {
+            encoder.write(TestUtils.generateBursts(2, 44100, 10, 1L));
+        }
+        byte[] mp3 = out.toByteArray();
+        assertTrue(Mp3Info.probe(new ByteArrayInputStream(mp3)).isVbr());
+        short[] samples = Mp3Decoder.decode(new ByteArrayInputStream(mp3)).getSamples();
+
+        Path file = Files.createTempFile("lame4j", ".mp3");
+        try {
+            Files.write(file, mp3);
+            try (Mp3Decoder decoder = new Mp3Decoder(FileChannel.open(file, StandardOpenOption.READ))) {
+                short[] dst = new short[decoder.getMaxSamplesPerFrame() * 2];
+                // Seeks into almost every frame, each time at a different offset in the frame
+                for (long position = 0L; position < decoder.getSampleCount(); position += 1152L + 37L) {
+                    decoder.seekToSample(position);
+                    ShortArrayBuffer buffer = new ShortArrayBuffer();
+                    int decoded;
+                    while (buffer.size() < 2304 && (decoded = decoder.decodeFrames(dst, 0, dst.length)) >= 0) {
+                        buffer.write(dst, 0, decoded);
+                    }
+                    short[] expected = Arrays.copyOfRange(samples, (int) position * 2, (int) Math.min(samples.length, position * 2 + buffer.size()));
+                    assertArrayEquals(expected, buffer.toShortArray(), "Position " + position);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Seek not supported")
+    void seekNotSupported() throws IOException, UnknownPlatformException {
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(new byte[0]))) {
+            assertThrows(UnsupportedOperationException.class, () -> decoder.seekToSample(0L));
+        }
+    }
+
+    @Test
+    @DisplayName("Decode mapped")
+    void decodeMapped() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 48000, 96, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 48000, 5));
+        }
+        byte[] mp3 = out.toByteArray();
+        short[] samples = Mp3Decoder.decode(new ByteArrayInputStream(mp3)).getSamples();
+
+        Path file = Files.createTempFile("lame4j", ".mp3");
+        try {
+            Files.write(file, mp3);
+            try (Mp3Decoder decoder = Mp3Decoder.map(file)) {
+                assertTrue(decoder.isSeekable());
+                ShortArrayBuffer buffer = new ShortArrayBuffer();
+                short[] dst = new short[decoder.getMaxSamplesPerFrame() * 8];
+                int decoded;
+                while ((decoded = decoder.decodeFrames(dst, 0, dst.length)) >= 0) {
+                    buffer.write(dst, 0, decoded);
+                }
+                assertArrayEquals(samples, buffer.toShortArray());
+
+                decoder.seekToSample(48000L * 2L + 5L);
+                short[] frame = new short[decoder.getMaxSamplesPerFrame()];
+                int frameSamples = decoder.decodeNextFrame(frame, 0);
+                assertArrayEquals(Arrays.copyOfRange(samples, 48000 * 2 + 5, 48000 * 2 + 5 + frameSamples), Arrays.copyOf(frame, frameSamples));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Decode parallel")
+    void decodeParallel() throws IOException, UnknownPlatformException {
+        int[][] formats = {{2, 44100, 128}, {1, 22050, 32}, {2, 48000, 320}};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int[] format : formats) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (Mp3Encoder encoder = new Mp3Encoder(format[0], format[1], format[2], 5, out)) {
+                    encoder.write(TestUtils.generateAudio(new double[]{440D, 1000D, 5000D}, format[1] * format[0], 20));
+                }
+                byte[] mp3 = out.toByteArray();
+                DecodedAudio decoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+
+                ByteBuffer input = ByteBuffer.allocateDirect(mp3.length);
+                input.put(mp3).flip();
+                DecodedAudio parallel = Mp3Decoder.decodeParallel(input, pool);
+                assertEquals(0, input.position());
+                assertArrayEquals(decoded.getSamples(), parallel.getSamples());
+                assertEquals(decoded.getChannelCount(), parallel.getChannelCount());
+                assertEquals(decoded.getSampleRate(), parallel.getSampleRate());
+                assertEquals(decoded.getBitRate(), parallel.getBitRate());
+
+                Path file = Files.createTempFile("lame4j", ".mp3");
+                try {
+                    Files.write(file, mp3);
+                    assertArrayEquals(decoded.getSamples(), Mp3Decoder.decodeParallel(file).getSamples());
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Decode parallel VBR")
+    void decodeParallelVbr() throws IOException, UnknownPlatformException {
+        // MPEG 1 with two granules and MPEG 2 with a single granule per frame
+        int[][] formats = {{2, 44100}, {1, 22050}};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int[] format : formats) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (Mp3Encoder encoder = new Mp3Encoder(Mp3EncoderConfig.builder(format[0], format[1]).vbr(2F).build(), out)) {
+                    encoder.write(TestUtils.generateBursts(format[0], format[1], 10, 0L));
+                }
+                byte[] mp3 = out.toByteArray();
+                Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(mp3));
+                assertTrue(info.isVbr());
+                short[] decoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3)).getSamples();
+
+                ByteBuffer input = ByteBuffer.allocateDirect(mp3.length);
+                input.put(mp3).flip();
+                for (int chunkCount = 2; chunkCount <= 64; chunkCount++) {
+                    assertArrayEquals(decoded, ParallelMp3Decoder.decode(input, pool, chunkCount).getSamples(), "Chunk count " + chunkCount);
+                }
+                // A chunk for every frame, so every frame is decoded after priming
+                assertArrayEquals(decoded, ParallelMp3Decoder.decode(input, pool, Integer.MAX_VALUE).getSamples());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Decode float")
+    void decodeFloat() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 1000D}, 44100 * 2, 2));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        DecodedAudio decoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+        DecodedFloatAudio decodedFloat = Mp3Decoder.decodeFloat(new ByteArrayInputStream(mp3));
+        assertEquals(decoded.getSamples().length, decodedFloat.getSamples().length);
+        for (int i = 0; i < decoded.getSamples().length; i++) {
+            assertEquals(decoded.getSamples()[i], decodedFloat.getSamples()[i] * 32768F, 1F);
+        }
+        assertEquals(decoded.getSampleCount(), decodedFloat.getSampleCount());
+        float[] part = new float[100];
+        assertEquals(100, decodedFloat.read(1000L, part, 0, part.length));
+        assertArrayEquals(Arrays.copyOfRange(decodedFloat.getSamples(), 1000, 1100), part);
+
+        AudioFormat format = decodedFloat.createAudioFormat();
+        assertEquals(AudioFormat.Encoding.PCM_FLOAT, format.getEncoding());
+        assertEquals(32, format.getSampleSizeInBits());
+        assertEquals(8, format.getFrameSize());
+
+        FloatBuffer buffer = ByteBuffer.allocateDirect(decodedFloat.getSamples().length * 4 + 4608 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        int total = 0;
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+            int samples;
+            while ((samples = decoder.decodeNextFrame(buffer)) >= 0) {
+                total += samples;
+            }
+        }
+        assertEquals(total, buffer.position());
+        buffer.flip();
+        float[] direct = new float[buffer.remaining()];
+        buffer.get(direct);
+        assertArrayEquals(decodedFloat.getSamples(), direct);
+    }
+
+    @Test
+    @DisplayName("Decode downmix")
+    void decodeDownmix() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 1000D}, 44100 * 2, 2));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        short[] stereo = Mp3Decoder.decode(new ByteArrayInputStream(mp3)).getSamples();
+        short[] mono = new short[stereo.length / 2 + 4608];
+        int total = 0;
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+            decoder.setDownmix(true);
+            int samples;
+            while ((samples = decoder.decodeFrames(mono, total, mono.length - total)) >= 0) {
+                total += samples;
+            }
+            assertEquals(1, decoder.getChannelCount());
+        }
+        assertEquals(stereo.length / 2, total);
+        for (int i = 0; i < total; i++) {
+            assertEquals((stereo[i * 2] + stereo[i * 2 + 1]) >> 1, mono[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Decode gapless")
+    void decodeGapless() throws IOException, UnknownPlatformException {
+        short[] input = TestUtils.generateAudio(new double[]{440D, 554.37D}, 44100 * 2, 5);
+        Path file = Files.createTempFile("lame4j", ".mp3");
+        try {
+            try (Mp3Encoder encoder = new Mp3Encoder(Mp3EncoderConfig.builder(2, 44100).cbr(128).build(), FileChannel.open(file, StandardOpenOption.WRITE))) {
+                encoder.write(input);
+                assertNull(encoder.getLameTag());
+            }
+            Mp3Info info = Mp3Info.probe(file);
+            assertEquals(input.length / 2, info.getSampleCount());
+
+            DecodedAudio audio = Mp3Decoder.decodeGapless(file);
+            assertEquals(input.length, audio.getSampleCount());
+            // Without the delay, the decoded audio is aligned with the input
+            assertEquals(1F, TestUtils.pcmSimilarity(input, audio.getSamples(), 0), 0.04F);
+
+            try (Mp3Decoder decoder = new Mp3Decoder(Files.newInputStream(file))) {
+                decoder.setGapless(true);
+                assertEquals(input.length / 2, decoder.getGaplessSampleCount());
+                short[] samples = new short[(int) decoder.getGaplessSampleCount() * 2];
+                short[] frame = new short[decoder.getMaxSamplesPerFrame()];
+                int total = 0;
+                int decoded;
+                while ((decoded = decoder.decodeNextFrame(frame, 0)) >= 0) {
+                    System.arraycopy(frame, 0, samples, total, decoded);
+                    total += decoded;
+                }
+                assertEquals(samples.length, total);
+                assertArrayEquals(audio.getSamples(), samples);
+            }
+
+            try (Mp3Decoder decoder = Mp3Decoder.map(file)) {
+                decoder.setGapless(true);
+                assertEquals(input.length / 2, decoder.getSampleCount());
+                long position = 44100L * 2L + 17L;
+                decoder.seekToSample(position);
+                ShortArrayBuffer buffer = new ShortArrayBuffer();
+                short[] dst = new short[decoder.getMaxSamplesPerFrame() * 4];
+                int decoded;
+                while ((decoded = decoder.decodeFrames(dst, 0, dst.length)) >= 0) {
+                    buffer.write(dst, 0, decoded);
+                }
+                assertArrayEquals(Arrays.copyOfRange(audio.getSamples(), (int) position * 2, input.length), buffer.toShortArray());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Push decoder")
+    void pushDecoder() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 1000D}, 44100 * 2, 5));
+        }
+        byte[] mp3 = out.toByteArray();
+        short[] expected = Mp3Decoder.decode(new ByteArrayInputStream(mp3)).getSamples();
+
+        ShortArrayBuffer decoded = new ShortArrayBuffer();
+        Random random = new Random(0L);
+        try (Mp3PushDecoder decoder = new Mp3PushDecoder()) {
+            int position = 0;
+            while (position < mp3.length) {
+                int length = Math.min(mp3.length - position, 1 + random.nextInt(3000));
+                decoded.writeShorts(decoder.feed(ByteBuffer.wrap(mp3, position, length)));
+                position += length;
+            }
+            assertTrue(decoder.getBufferedBytes() > 0);
+            decoded.writeShorts(decoder.finish());
+            assertEquals(0, decoder.getBufferedBytes());
+            assertEquals(2, decoder.getChannelCount());
+            assertEquals(44100, decoder.getSampleRate());
+        }
+        assertArrayEquals(expected, decoded.toShortArray());
+
+        short[] samples = new short[expected.length + 4608];
+        int total = 0;
+        try (Mp3PushDecoder decoder = new Mp3PushDecoder()) {
+            for (int position = 0; position < mp3.length; position += 1000) {
+                decoder.append(ByteBuffer.wrap(mp3, position, Math.min(1000, mp3.length - position)));
+                int decodedSamples;
+                while ((decodedSamples = decoder.decodeFrames(samples, total, samples.length - total)) > 0) {
+                    total += decodedSamples;
+                }
+                assertEquals(0, decodedSamples);
+            }
+            decoder.finish();
+            int decodedSamples;
+            while ((decodedSamples = decoder.decodeFrames(samples, total, samples.length - total)) >= 0) {
+                total += decodedSamples;
+            }
+            assertThrows(IllegalStateException.class, () -> decoder.append(ByteBuffer.allocate(1)));
+        }
+        assertArrayEquals(expected, Arrays.copyOf(samples, total));
+    }
+
+    @Test
+    @DisplayName("Decode file")
+    void decodeFile() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 1000D}, 44100 * 2, 30));
+        }
+        byte[] mp3 = out.toByteArray();
+        DecodedAudio decoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+        assertEquals(decoded.getSamples().length, decoded.getSampleCount());
+
+        Path file = Files.createTempFile("lame4j", ".mp3");
+        try {
+            Files.write(file, mp3);
+            DecodedAudio fileDecoded = Mp3Decoder.decode(file);
+            assertEquals(decoded.getSampleCount(), fileDecoded.getSampleCount());
+            assertArrayEquals(decoded.getSamples(), fileDecoded.getSamples());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Read decoded audio")
+    void readDecodedAudio() {
+        short[] samples = new short[1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) i;
+        }
+        short[][] chunks = {
+                Arrays.copyOfRange(samples, 0, 300),
+                new short[0],
+                Arrays.copyOfRange(samples, 300, 301),
+                Arrays.copyOfRange(samples, 301, 1000)
+        };
+        DecodedAudio audio = new DecodedAudio(2, 44100, 128, chunks);
+        assertEquals(1000L, audio.getSampleCount());
+        assertArrayEquals(samples, audio.getSamples());
+        assertSame(audio.getSamples(), audio.getSamples());
+
+        short[] dst = new short[110];
+        for (long position : new long[]{0L, 250L, 299L, 300L, 301L, 950L}) {
+            int read = audio.read(position, dst, 10, 100);
+            assertEquals(Math.min(100, 1000 - (int) position), read);
+            assertArrayEquals(Arrays.copyOfRange(samples, (int) position, (int) position + read), Arrays.copyOfRange(dst, 10, 10 + read));
+        }
+        assertEquals(-1, audio.read(1000L, dst, 0, 10));
+
+        ShortBuffer buffer = ShortBuffer.allocate(400);
+        assertEquals(400, audio.read(200L, buffer));
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(Arrays.copyOfRange(samples, 200, 600), buffer.array());
+    }
+
 }
@@ -4,10 +4,18 @@ import de.maxhenkel.nativeutils.UnknownPlatformException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class Mp3EncoderTest {
 
@@ -24,4 +32,208 @@ public class Mp3EncoderTest {
         assertTrue(out.toByteArray().length > 0);
     }
 
+    @Test
+    @DisplayName("Encode direct")
+    void encodeDirect() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D}, 48000, 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 48000, 128, 5, out)) {
+            encoder.write(samples);
+        }
+
+        ShortBuffer input = ByteBuffer.allocateDirect(samples.length * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        input.put(samples).flip();
+        ByteBuffer output = ByteBuffer.allocateDirect(Mp3Encoder.getMaxEncodedSize(samples.length) + Mp3Encoder.FLUSH_BUFFER_SIZE);
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 48000, 128, 5, new ByteArrayOutputStream())) {
+            encoder.encode(input, output);
+            encoder.flush(output);
+            assertThrows(IllegalStateException.class, () -> encoder.flush(output));
+        }
+        assertFalse(input.hasRemaining());
+        output.flip();
+        byte[] direct = new byte[output.remaining()];
+        output.get(direct);
+
+        assertArrayEquals(out.toByteArray(), direct);
+    }
+
+    @Test
+    @DisplayName("Encode into array")
+    void encodeIntoArray() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D}, 48000, 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 48000, 128, 5, out)) {
+            encoder.write(samples);
+        }
+
+        ByteArrayOutputStream chunked = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 48000, 128, 5, chunked)) {
+            for (int i = 0; i < samples.length; i += 960) {
+                encoder.write(samples, i, Math.min(960, samples.length - i));
+            }
+        }
+        assertArrayEquals(out.toByteArray(), chunked.toByteArray());
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ByteArrayOutputStream flushed = new ByteArrayOutputStream();
+        byte[] dst = new byte[Mp3Encoder.getMaxEncodedSize(960) + 10];
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 48000, 128, 5, flushed)) {
+            assertThrows(IllegalArgumentException.class, () -> encoder.encode(samples, 0, 960, dst, 11));
+            for (int i = 0; i < samples.length; i += 960) {
+                int bytes = encoder.encode(samples, i, Math.min(960, samples.length - i), dst, 10);
+                encoded.write(dst, 10, bytes);
+            }
+        }
+        encoded.write(flushed.toByteArray());
+        assertArrayEquals(out.toByteArray(), encoded.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Encode VBR")
+    void encodeVbr() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D, 3000D}, 44100 * 2, 5);
+        Mp3EncoderConfig config = Mp3EncoderConfig.builder(2, 44100).vbr(2F).minBitRate(64).maxBitRate(256).lowpass(18000).build();
+        assertEquals(Mp3EncoderConfig.BitRateMode.VBR, config.getBitRateMode());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(config, out)) {
+            encoder.write(samples);
+        }
+        byte[] mp3 = out.toByteArray();
+
+        Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(mp3));
+        assertTrue(info.isVbr());
+        DecodedAudio decoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+        assertEquals(2, decoded.getChannelCount());
+        assertTrue(TestUtils.pcmSimilarity(samples, decoded.getSamples()) > 0.9F);
+    }
+
+    @Test
+    @DisplayName("Encode ABR")
+    void encodeAbr() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D, 3000D}, 44100, 5);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(Mp3EncoderConfig.builder(1, 44100).abr(96).minBitRate(32).maxBitRate(160).build(), out)) {
+            encoder.write(samples);
+        }
+
+        Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(info.getBitRate() >= 32 && info.getBitRate() <= 160);
+    }
+
+    @Test
+    @DisplayName("Encode float")
+    void encodeFloat() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D, 3000D}, 44100 * 2, 2);
+        float[] floatSamples = new float[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            floatSamples[i] = samples[i] / 32768F;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(floatSamples);
+        }
+        byte[] mp3 = out.toByteArray();
+
+        FloatBuffer input = ByteBuffer.allocateDirect(floatSamples.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        input.put(floatSamples).flip();
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, direct)) {
+            encoder.write(input);
+        }
+        assertFalse(input.hasRemaining());
+        assertArrayEquals(mp3, direct.toByteArray());
+
+        DecodedAudio decoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+        assertEquals(2, decoded.getChannelCount());
+        assertTrue(TestUtils.pcmSimilarity(samples, decoded.getSamples()) > 0.9F);
+    }
+
+    @Test
+    @DisplayName("Encode frames")
+    void encodeFrames() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D}, 48000, 2);
+        Mp3EncoderConfig config = Mp3EncoderConfig.builder(1, 48000).cbr(64).build();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(config, true, false, expected)) {
+            for (int i = 0; i < samples.length; i += 960) {
+                encoder.write(samples, i, Math.min(960, samples.length - i));
+            }
+        }
+
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        List<Long> positions = new ArrayList<>();
+        int encoderDelay;
+        long frameCount;
+        try (Mp3FrameEncoder encoder = new Mp3FrameEncoder(config, true, (data, offset, length, samplePosition) -> {
+            Mp3FrameHeader header = Mp3FrameHeader.parse(data, offset);
+            assertNotNull(header);
+            assertEquals(header.getFrameSize(), length);
+            frames.write(data, offset, length);
+            positions.add(samplePosition);
+        })) {
+            encoderDelay = encoder.getEncoderDelay();
+            assertEquals(1152, encoder.getFrameSize());
+            for (int i = 0; i < samples.length; i += 960) {
+                encoder.write(samples, i, Math.min(960, samples.length - i));
+            }
+            frameCount = encoder.getFrameCount();
+        }
+
+        assertTrue(encoderDelay > 0);
+        assertTrue(frameCount > 0L);
+        assertArrayEquals(expected.toByteArray(), frames.toByteArray());
+        for (int i = 0; i < positions.size(); i++) {
+            assertEquals(i * 1152L - encoderDelay, (long) positions.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid config")
+    void invalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> Mp3EncoderConfig.builder(2, 44100).vbr(10F));
+        assertThrows(IllegalArgumentException.class, () -> Mp3EncoderConfig.builder(2, 44100).cbr(0));
+        assertThrows(IllegalArgumentException.class, () -> Mp3EncoderConfig.builder(2, 44100).minBitRate(128).maxBitRate(64).build());
+        assertThrows(IllegalArgumentException.class, () -> Mp3EncoderConfig.builder(2, 44100).outSampleRate(-1));
+        assertThrows(IllegalArgumentException.class, () -> Mp3EncoderConfig.builder(1, 8000).outSampleRate(48000).build());
+        assertEquals(22050, Mp3EncoderConfig.builder(2, 44100).outSampleRate(22050).build().getOutSampleRate());
+        assertThrows(IllegalArgumentException.class, () -> Mp3EncoderConfig.builder(1, 44100).channelMode(Mp3EncoderConfig.ChannelMode.STEREO).build());
+    }
+
+    @Test
+    @DisplayName("Encode parallel")
+    void encodeParallel() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D, 1000D}, 44100 * 2, 30);
+
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, sequential)) {
+            encoder.write(samples);
+        }
+
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Mp3Encoder.encodeParallel(samples, 2, 44100, 128, 5, parallel, pool);
+        } finally {
+            pool.shutdown();
+        }
+        byte[] mp3 = parallel.toByteArray();
+
+        Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(mp3));
+        assertEquals(2, info.getChannelCount());
+        assertEquals(44100, info.getSampleRate());
+        assertEquals(128, info.getBitRate());
+        assertEquals(samples.length / 2, info.getSampleCount());
+
+        DecodedAudio sequentialDecoded = Mp3Decoder.decode(new ByteArrayInputStream(sequential.toByteArray()));
+        DecodedAudio parallelDecoded = Mp3Decoder.decode(new ByteArrayInputStream(mp3));
+        assertEquals(sequentialDecoded.getSamples().length, parallelDecoded.getSamples().length);
+        assertTrue(TestUtils.pcmSimilarity(sequentialDecoded.getSamples(), parallelDecoded.getSamples(), 16) > 0.95F);
+    }
+
 }
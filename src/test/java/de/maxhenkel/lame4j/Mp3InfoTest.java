@@ -0,0 +1,129 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp3InfoTest {
+
+    @Test
+    @DisplayName("Probe")
+    void probe() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 48000, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 48000 * 2, 3));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(mp3));
+
+        assertEquals(48000, info.getSampleRate());
+        assertEquals(2, info.getChannelCount());
+        assertEquals(128, info.getBitRate());
+        assertEquals(1152, info.getSamplesPerFrame());
+        assertFalse(info.isVbr());
+
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+            short[] dst = new short[decoder.getMaxSamplesPerFrame()];
+            long samples = 0L;
+            int decoded;
+            while ((decoded = decoder.decodeNextFrame(dst, 0)) >= 0) {
+                samples += decoded;
+            }
+            assertEquals(decoder.getFrameCount(), info.getFrameCount());
+            assertEquals(samples, info.getSampleCount() * info.getChannelCount());
+        }
+        assertEquals(info.getSampleCount() / 48000D, info.getDuration(), 0.0001D);
+    }
+
+    @Test
+    @DisplayName("Probe with ID3 tag")
+    void probeId3() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 44100, 64, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 44100, 1));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        ByteArrayOutputStream tagged = new ByteArrayOutputStream();
+        tagged.write(new byte[]{'I', 'D', '3', 4, 0, 0, 0, 0, 1, 0});
+        byte[] tag = new byte[128];
+        // Something that looks like a frame header
+        tag[10] = (byte) 0xFF;
+        tag[11] = (byte) 0xFB;
+        tagged.write(tag);
+        tagged.write(mp3);
+
+        Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(mp3));
+        Mp3Info taggedInfo = Mp3Info.probe(new ByteArrayInputStream(tagged.toByteArray()));
+
+        assertEquals(info.getFrameCount(), taggedInfo.getFrameCount());
+        assertEquals(64, taggedInfo.getBitRate());
+        assertEquals(1, taggedInfo.getChannelCount());
+    }
+
+    @Test
+    @DisplayName("Probe with false sync")
+    void probeFalseSync() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 44100 * 2, 2));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        // Two headers of 128 kbps frames that follow each other, but are not followed by more frames
+        byte[] junk = new byte[1000];
+        byte[] header = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, (byte) 0x64};
+        System.arraycopy(header, 0, junk, 0, header.length);
+        System.arraycopy(header, 0, junk, 417, header.length);
+        ByteArrayOutputStream prefixed = new ByteArrayOutputStream();
+        prefixed.write(junk);
+        prefixed.write(mp3);
+
+        Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(mp3));
+        Mp3Info prefixedInfo = Mp3Info.probe(new ByteArrayInputStream(prefixed.toByteArray()));
+        assertEquals(info.getFrameCount(), prefixedInfo.getFrameCount());
+
+        // The decoder doesn't synchronize to the false frames either
+        DecodedAudio audio = Mp3Decoder.decode(new ByteArrayInputStream(prefixed.toByteArray()));
+        assertEquals(prefixedInfo.getSampleCount() * prefixedInfo.getChannelCount(), audio.getSampleCount());
+    }
+
+    @Test
+    @DisplayName("Probe file")
+    void probeFile() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 22050, 32, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D}, 22050, 2));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        Path file = Files.createTempFile("lame4j", ".mp3");
+        try {
+            Files.write(file, mp3);
+            Mp3Info info = Mp3Info.probe(file);
+            Mp3Info streamInfo = Mp3Info.probe(new ByteArrayInputStream(mp3));
+            assertEquals(streamInfo.getFrameCount(), info.getFrameCount());
+            assertEquals(576, info.getSamplesPerFrame());
+            assertEquals(22050, info.getSampleRate());
+            assertEquals(32, info.getBitRate());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Probe invalid")
+    void probeInvalid() {
+        assertThrows(IOException.class, () -> Mp3Info.probe(new ByteArrayInputStream(new byte[1024])));
+    }
+
+}
@@ -0,0 +1,141 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp3MetricsTest {
+
+    @Test
+    @DisplayName("Instance statistics")
+    void instanceStatistics() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D}, 44100, 2);
+        Mp3Statistics encoderStatistics = new Mp3Statistics();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(1, 44100, 128, 5, out)) {
+            encoder.setMetricsListener(encoderStatistics);
+            for (int i = 0; i < samples.length; i += 4410) {
+                encoder.write(samples, i, Math.min(4410, samples.length - i));
+            }
+        }
+        assertEquals(samples.length, encoderStatistics.getSamplesEncoded());
+        assertEquals(out.size(), encoderStatistics.getBytesEncoded());
+        assertEquals(out.size(), encoderStatistics.getOutputBytes());
+        assertEquals(21L, encoderStatistics.getWriteCount());
+        assertTrue(encoderStatistics.getEncodeNanos() > 0L);
+
+        Mp3Statistics decoderStatistics = new Mp3Statistics();
+        // Data without any frames in front of the mp3 data is skipped by the decoder
+        byte[] mp3 = new byte[20000 + out.size()];
+        System.arraycopy(out.toByteArray(), 0, mp3, 20000, out.size());
+        long decodedSamples = 0L;
+        long frames;
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+            decoder.setMetricsListener(decoderStatistics);
+            short[] buffer = new short[decoder.getMaxSamplesPerFrame()];
+            int decoded;
+            while ((decoded = decoder.decodeNextFrame(buffer, 0)) >= 0) {
+                decodedSamples += decoded;
+            }
+            frames = decoder.getFrameCount();
+        }
+        assertEquals(frames, decoderStatistics.getFramesDecoded());
+        assertEquals(decodedSamples, decoderStatistics.getSamplesDecoded());
+        assertEquals(mp3.length, decoderStatistics.getInputBytes());
+        assertEquals(mp3.length, decoderStatistics.getBytesConsumed());
+        assertTrue(decoderStatistics.getBytesSkipped() > 0L);
+        assertEquals(0L, decoderStatistics.getSamplesEncoded());
+
+        decoderStatistics.reset();
+        assertEquals(0L, decoderStatistics.getFramesDecoded());
+        assertEquals(0L, decoderStatistics.getDecodeTimeP99Nanos());
+    }
+
+    @Test
+    @DisplayName("Global statistics")
+    void globalStatistics() throws IOException, UnknownPlatformException, JMException {
+        Mp3Statistics statistics = new Mp3Statistics();
+        ObjectName name = statistics.register("test");
+        Mp3Metrics.setListener(statistics);
+        try {
+            int liveEncoders = Mp3Metrics.getLiveEncoderCount();
+            Mp3Encoder encoder = new Mp3Encoder(1, 44100, 128, 5, new ByteArrayOutputStream());
+            assertEquals(liveEncoders + 1, Mp3Metrics.getLiveEncoderCount());
+            encoder.write(new short[44100]);
+            encoder.close();
+            assertEquals(liveEncoders, Mp3Metrics.getLiveEncoderCount());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(44100L, server.getAttribute(name, "SamplesEncoded"));
+            assertEquals(liveEncoders, server.getAttribute(name, "LiveEncoderCount"));
+        } finally {
+            Mp3Metrics.setListener(null);
+            Mp3Statistics.unregister("test");
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    @DisplayName("Leak detection")
+    void leakDetection() throws IOException, UnknownPlatformException, InterruptedException {
+        AtomicReference<Throwable> allocationSite = new AtomicReference<>();
+        Mp3Metrics.setListener(new Mp3MetricsListener() {
+            @Override
+            public void leaked(String type, Throwable site) {
+                allocationSite.set(site);
+            }
+        });
+        Mp3Metrics.setLeakTracking(true);
+        try {
+            int liveEncoders = Mp3Metrics.getLiveEncoderCount();
+            long leaks = Mp3Metrics.getLeakCount();
+            createUnclosedEncoder();
+            assertEquals(liveEncoders + 1, Mp3Metrics.getLiveEncoderCount());
+
+            for (int i = 0; i < 100 && allocationSite.get() == null; i++) {
+                System.gc();
+                Thread.sleep(50L);
+            }
+            assertNotNull(allocationSite.get());
+            assertEquals(leaks + 1L, Mp3Metrics.getLeakCount());
+            assertEquals(liveEncoders, Mp3Metrics.getLiveEncoderCount());
+        } finally {
+            Mp3Metrics.setLeakTracking(false);
+            Mp3Metrics.setListener(null);
+        }
+    }
+
+    private static void createUnclosedEncoder() throws IOException, UnknownPlatformException {
+        new Mp3Encoder(1, 44100, 128, 5, new ByteArrayOutputStream()).write(new short[4410]);
+    }
+
+    @Test
+    @DisplayName("Histogram")
+    void histogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0L, histogram.getPercentile(99D));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100L);
+        }
+        histogram.record(5000L);
+        histogram.record(0L);
+        assertEquals(127L, histogram.getPercentile(50D));
+        assertEquals(8191L, histogram.getPercentile(100D));
+        long[] counts = histogram.getCounts();
+        assertEquals(1L, counts[0]);
+        assertEquals(99L, counts[7]);
+        assertEquals(1L, counts[13]);
+    }
+
+}
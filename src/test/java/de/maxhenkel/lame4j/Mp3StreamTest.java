@@ -0,0 +1,106 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp3StreamTest {
+
+    @Test
+    @DisplayName("Audio input stream")
+    void audioInputStream() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 554.37D}, 44100 * 2, 5));
+        }
+        byte[] mp3 = out.toByteArray();
+        short[] samples = Mp3Decoder.decode(new ByteArrayInputStream(mp3)).getSamples();
+
+        try (AudioInputStream stream = Mp3AudioInputStream.open(new ByteArrayInputStream(mp3))) {
+            AudioFormat format = stream.getFormat();
+            assertEquals(AudioFormat.Encoding.PCM_SIGNED, format.getEncoding());
+            assertEquals(44100F, format.getSampleRate());
+            assertEquals(2, format.getChannels());
+            assertEquals(16, format.getSampleSizeInBits());
+            assertFalse(format.isBigEndian());
+            assertEquals(AudioSystem.NOT_SPECIFIED, stream.getFrameLength());
+            assertArrayEquals(samples, toShorts(readAll(stream, 1001)));
+        }
+
+        Path file = Files.createTempFile("lame4j", ".mp3");
+        try {
+            Files.write(file, mp3);
+            try (AudioInputStream stream = Mp3AudioInputStream.open(file)) {
+                assertEquals(samples.length / 2, stream.getFrameLength());
+                assertArrayEquals(samples, toShorts(readAll(stream, 4096)));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        assertThrows(IOException.class, () -> Mp3AudioInputStream.open(new ByteArrayInputStream(new byte[100])));
+    }
+
+    @Test
+    @DisplayName("Output stream")
+    void outputStream() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D, 554.37D}, 44100 * 2, 5);
+        ByteBuffer pcm = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        pcm.asShortBuffer().put(samples);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, expected)) {
+            encoder.write(samples);
+        }
+
+        AudioFormat format = new AudioFormat(44100F, 16, 2, true, false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3OutputStream stream = new Mp3OutputStream(format, 128, 5, out)) {
+            byte[] data = pcm.array();
+            // Write in odd chunks, so samples and sample frames are split across writes
+            int offset = 0;
+            while (offset < data.length) {
+                int length = Math.min(777, data.length - offset);
+                stream.write(data, offset, length);
+                offset += length;
+                if (offset < data.length) {
+                    stream.write(data[offset++]);
+                }
+            }
+        }
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+
+        assertThrows(IllegalArgumentException.class, () -> new Mp3OutputStream(new AudioFormat(44100F, 8, 2, true, false), 128, 5, new ByteArrayOutputStream()));
+    }
+
+    private static byte[] readAll(InputStream stream, int chunkSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[chunkSize];
+        int read;
+        while ((read = stream.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static short[] toShorts(byte[] data) {
+        short[] samples = new short[data.length / 2];
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+        return samples;
+    }
+
+}
@@ -0,0 +1,170 @@
+package de.maxhenkel.lame4j;
+
+import de.maxhenkel.nativeutils.UnknownPlatformException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp3TranscoderTest {
+
+    @Test
+    @DisplayName("Transcode")
+    void transcode() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 192, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 1000D}, 44100 * 2, 20));
+        }
+        byte[] mp3 = out.toByteArray();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 64, 5, expected)) {
+            encoder.write(Mp3Decoder.decode(new ByteArrayInputStream(mp3)).getSamples());
+        }
+
+        for (boolean pipelined : new boolean[]{false, true}) {
+            ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+            try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(mp3))) {
+                new Mp3Transcoder(64, 5, pipelined).transcode(decoder, transcoded);
+            }
+            assertArrayEquals(expected.toByteArray(), transcoded.toByteArray());
+        }
+
+        Path input = Files.createTempFile("lame4j", ".mp3");
+        Path output = Files.createTempFile("lame4j", ".mp3");
+        try {
+            Files.write(input, mp3);
+            new Mp3Transcoder(Mp3Transcoder.SOURCE_BIT_RATE, 5, true).transcode(input, output);
+            Mp3Info info = Mp3Info.probe(output);
+            assertEquals(192, info.getBitRate());
+            assertEquals(2, info.getChannelCount());
+            assertEquals(44100, info.getSampleRate());
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    @DisplayName("Transcode VBR with source bit rate")
+    void transcodeVbrSourceBitRate() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(Mp3EncoderConfig.builder(2, 44100).vbr(2F).build(), out)) {
+            encoder.write(TestUtils.generateBursts(2, 44100, 10, 2L));
+        }
+
+        Path input = Files.createTempFile("lame4j", ".mp3");
+        Path output = Files.createTempFile("lame4j", ".mp3");
+        try {
+            Files.write(input, out.toByteArray());
+            Mp3Info source = Mp3Info.probe(input);
+            assertTrue(source.isVbr());
+            int averageBitRate;
+            try (Mp3Decoder decoder = Mp3Decoder.map(input)) {
+                averageBitRate = decoder.getAverageBitRate();
+            }
+            assertEquals(source.getBitRate(), averageBitRate, 2);
+
+            new Mp3Transcoder(Mp3Transcoder.SOURCE_BIT_RATE, 5, false).transcode(input, output);
+            Mp3Info info = Mp3Info.probe(output);
+            assertFalse(info.isVbr());
+            assertEquals(Mp3FrameHeader.getNearestBitRate(averageBitRate, 44100), info.getBitRate());
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    @DisplayName("Transcode resampled")
+    void transcodeResampled() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 48000, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 1000D}, 48000 * 2, 10));
+        }
+
+        ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(out.toByteArray()))) {
+            new Mp3Transcoder(32, 5, 22050, Mp3EncoderConfig.ChannelMode.MONO, true).transcode(decoder, transcoded);
+        }
+
+        Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(transcoded.toByteArray()));
+        assertEquals(1, info.getChannelCount());
+        assertEquals(22050, info.getSampleRate());
+        assertEquals(32, info.getBitRate());
+        assertEquals(10D, info.getDuration(), 0.2D);
+    }
+
+    @Test
+    @DisplayName("Transcode with caller downmix")
+    void transcodeCallerDownmix() throws IOException, UnknownPlatformException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Mp3Encoder encoder = new Mp3Encoder(2, 44100, 128, 5, out)) {
+            encoder.write(TestUtils.generateAudio(new double[]{440D, 1000D}, 44100 * 2, 2));
+        }
+
+        ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(out.toByteArray()))) {
+            decoder.setDownmix(true);
+            new Mp3Transcoder(64, 5, false).transcode(decoder, transcoded);
+        }
+
+        Mp3Info info = Mp3Info.probe(new ByteArrayInputStream(transcoded.toByteArray()));
+        assertEquals(1, info.getChannelCount());
+    }
+
+    @Test
+    @DisplayName("Transcode pooled")
+    void transcodePooled() throws IOException, UnknownPlatformException {
+        short[] samples = TestUtils.generateAudio(new double[]{440D, 1000D}, 44100 * 2, 3);
+        Path input = Files.createTempFile("lame4j", ".mp3");
+        Path output = Files.createTempFile("lame4j", ".mp3");
+        try (Mp3DecoderPool decoderPool = new Mp3DecoderPool(1, 1L, TimeUnit.MINUTES)) {
+            try (Mp3Encoder encoder = new Mp3Encoder(Mp3EncoderConfig.builder(2, 44100).cbr(192).build(), FileChannel.open(input, StandardOpenOption.WRITE))) {
+                encoder.write(samples);
+            }
+            Mp3Transcoder transcoder = new Mp3Transcoder(128, 5, false);
+            byte[] first = null;
+            for (int i = 0; i < 2; i++) {
+                double duration = transcoder.transcode(input, output, decoderPool);
+                assertEquals(samples.length / 2D / 44100D, duration, 0.0001D);
+                assertEquals(1, decoderPool.getIdleCount());
+
+                // The encoder delay and padding are removed before re-encoding, so the length doesn't change
+                Mp3Info info = Mp3Info.probe(output);
+                assertEquals(128, info.getBitRate());
+                assertEquals(samples.length / 2, info.getSampleCount());
+                assertEquals(samples.length, Mp3Decoder.decodeGapless(output).getSampleCount());
+
+                // The second file is decoded with the reused context of the first one
+                byte[] transcoded = Files.readAllBytes(output);
+                if (first == null) {
+                    first = transcoded;
+                } else {
+                    assertArrayEquals(first, transcoded);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    @DisplayName("Transcode invalid")
+    void transcodeInvalid() throws IOException, UnknownPlatformException {
+        try (Mp3Decoder decoder = new Mp3Decoder(new ByteArrayInputStream(new byte[1000]))) {
+            assertThrows(IOException.class, () -> new Mp3Transcoder(128, 5, true).transcode(decoder, new ByteArrayOutputStream()));
+        }
+    }
+
+}
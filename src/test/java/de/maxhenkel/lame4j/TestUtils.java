@@ -1,5 +1,7 @@
 package de.maxhenkel.lame4j;
 
+import java.util.Random;
+
 public class TestUtils {
 
     public static short[] generateAudio(double[] frequencies, int sampleRate, double seconds) {
@@ -31,6 +33,22 @@ public class TestUtils {
         return out;
     }
 
+    /**
+     * Generates a tone that is interrupted by loud noise bursts, so VBR encoders alternate between small and large frames.
+     */
+    public static short[] generateBursts(int channels, int sampleRate, double seconds, long seed) {
+        short[] tone = generateAudio(new double[]{440D}, sampleRate * channels, seconds);
+        Random random = new Random(seed);
+        int burstLength = sampleRate * channels / 10;
+        for (int start = sampleRate * channels / 4; start < tone.length; start += burstLength * (2 + random.nextInt(4))) {
+            int end = Math.min(tone.length, start + burstLength);
+            for (int i = start; i < end; i++) {
+                tone[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, random.nextGaussian() * 8000D));
+            }
+        }
+        return tone;
+    }
+
     public static float pcmSimilarity(short[] a, short[] b) {
         return pcmSimilarity(a, b, 4096);
     }